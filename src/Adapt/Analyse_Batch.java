@@ -6,6 +6,7 @@
 package Adapt;
 
 import UserVariables.UserVariables;
+import UtilClasses.GenUtils;
 import UtilClasses.Utilities;
 import ij.IJ;
 import ij.ImagePlus;
@@ -14,9 +15,13 @@ import ij.gui.PointRoi;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Pattern;
 import ui.GUI;
 
@@ -27,6 +32,7 @@ public class Analyse_Batch extends Analyse_Movie {
 
     private boolean showGUI = true, mono = false;
     private File c1Directory, c2Directory;
+    private WorkQueue workQueue;
 //
 
     public Analyse_Batch() {
@@ -63,6 +69,16 @@ public class Analyse_Batch extends Analyse_Movie {
             if (c2Directory == null && !mono) {
                 c2Directory = Utilities.getFolder(directory, "Select directory for second channel", false);
             }
+            if (c1Directory == null && workQueue == null) {
+                /*
+                 Optional - movies are shared with other instances of ADAPT
+                 given the same queue directory
+                 */
+                File queueDirectory = Utilities.getFolder(directory, "Select shared queue directory (cancel to analyse all movies)", false);
+                if (queueDirectory != null) {
+                    workQueue = new WorkQueue(queueDirectory);
+                }
+            }
             directory = new File(directory.getAbsolutePath() + delimiter + "..");
         } catch (Exception e) {
             IJ.log(e.toString());
@@ -84,39 +100,91 @@ public class Analyse_Batch extends Analyse_Movie {
         if (sigImageFiles != null) {
             Arrays.sort(sigImageFiles);
         }
-        for (int f = 0; f < cytoSize; f++) {
-            ImagePlus cytoImp = new ImagePlus(cytoImageFiles[f].getAbsolutePath());
-            ImageStack cytoStack = cytoImp.getImageStack();
-            roi = (PointRoi) cytoImp.getRoi();
-            if (cytoStack != null && cytoStack.getSize() > 0) {
-                try {
-                    ImageStack sigStack;
-                    if (cytoSize == sigSize) {
-                        ImagePlus sigImp = new ImagePlus(sigImageFiles[f].getAbsolutePath());
-                        sigStack = sigImp.getImageStack();
-                    } else {
-                        sigStack = null;
-                    }
-                    stacks[0] = cytoStack;
-                    stacks[1] = sigStack;
-                    if (showGUI) {
-                        showGUI = false;
-                        GUI gui = new GUI(null, true, TITLE, stacks, roi);
-                        gui.setVisible(true);
-                        if (!gui.isWasOKed()) {
-                            return;
-                        }
-                        uv = GUI.getUv();
-                    }
-                    analyse(cytoImageFiles[f].getName());
-                } catch (Exception e) {
-                    IJ.log("Failed to analyse " + cytoImageFiles[f].getName());
+        File[] cytoFiles = cytoImageFiles;
+        File[] sigFiles = sigSize == cytoSize ? sigImageFiles : null;
+        try {
+            if (workQueue == null) {
+                for (int f = 0; f < cytoSize; f++) {
+                    analyseMovie(cytoFiles[f], sigFiles != null ? sigFiles[f] : null);
                 }
+            } else {
+                /*
+                 Each movie is analysed by whichever worker sharing the queue
+                 claims it first
+                 */
+                LinkedHashMap<String, Integer> keys = WorkQueue.getKeys(Arrays.asList(cytoFiles));
+                workQueue.process(new ArrayList<>(keys.keySet()), key -> {
+                    int f = keys.get(key);
+                    return analyseMovie(cytoFiles[f], sigFiles != null ? sigFiles[f] : null);
+                });
+            }
+        } catch (IOException | InterruptedException e) {
+            GenUtils.logError(e, "Batch processing with work queue failed.");
+        } catch (CancellationException e) {
+            return;
+        } finally {
+            if (workQueue != null) {
+                workQueue.shutdown();
             }
         }
         IJ.showStatus(TITLE + " done.");
     }
 
+    /*
+     * Analyses one movie, returning true if the analysis completed. Throws
+     * CancellationException if the user cancels the parameter dialog.
+     */
+    private boolean analyseMovie(File cytoFile, File sigFile) {
+        ImagePlus cytoImp = new ImagePlus(cytoFile.getAbsolutePath());
+        ImageStack cytoStack = cytoImp.getImageStack();
+        roi = (PointRoi) cytoImp.getRoi();
+        if (cytoStack != null && cytoStack.getSize() > 0) {
+            try {
+                ImageStack sigStack;
+                if (sigFile != null) {
+                    ImagePlus sigImp = new ImagePlus(sigFile.getAbsolutePath());
+                    sigStack = sigImp.getImageStack();
+                } else {
+                    sigStack = null;
+                }
+                stacks[0] = cytoStack;
+                stacks[1] = sigStack;
+                if (showGUI) {
+                    showGUI = false;
+                    GUI gui = new GUI(null, true, TITLE, stacks, roi);
+                    gui.setVisible(true);
+                    if (!gui.isWasOKed()) {
+                        throw new CancellationException();
+                    }
+                    uv = GUI.getUv();
+                    setSaveBlebDataFiles(gui.isSaveBlebDataFiles());
+                    setGreyLevels(gui.getGreyLevels());
+                    setVisualisationOutputMode(gui.getVisualisationOutputMode());
+                }
+                analyse(cytoFile.getName());
+                saveMetrics();
+                return true;
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                IJ.log("Failed to analyse " + cytoFile.getName());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Specify a work queue, shared with other workers, from which movies are
+     * claimed. Each movie in the input directory is then analysed by only one
+     * worker, with results saved to the usual output directory. Workers
+     * sharing a queue should be given the same input directories.
+     *
+     * @param workQueue shared work queue, or null to analyse every movie
+     */
+    public void setWorkQueue(WorkQueue workQueue) {
+        this.workQueue = workQueue;
+    }
+
     public static void readParams(UserVariables uv, File input) {
         Pattern p = Pattern.compile("\\S*,\\s*");
         try {
@@ -38,7 +38,6 @@ import UtilClasses.GenUtils;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
-import ij.Prefs;
 import ij.WindowManager;
 import ij.gui.PointRoi;
 import ij.gui.PolygonRoi;
@@ -46,7 +45,6 @@ import ij.gui.Roi;
 import ij.measure.Measurements;
 import ij.measure.ResultsTable;
 import ij.plugin.PlugIn;
-import ij.plugin.filter.Analyzer;
 import ij.plugin.filter.GaussianBlur;
 import ij.plugin.filter.ParticleAnalyzer;
 import ij.plugin.frame.RoiManager;
@@ -73,17 +71,20 @@ import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.CancellationException;
 import org.apache.commons.io.FilenameUtils;
 import ui.GUI;
 import UtilClasses.GenVariables;
+import Visualisation.MultiThreadedSegmentationVisualiser;
 import Visualisation.MultiThreadedVisualisationGenerator;
-import java.awt.Window;
+import Visualisation.VisualisationOutputMode;
 import java.time.LocalDateTime;
-import java.util.InputMismatchException;
 import java.util.Properties;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Analyse_Movie is designed to quantify cell membrane dynamics and correlate
@@ -95,7 +96,7 @@ import java.util.concurrent.Executors;
 public class Analyse_Movie extends NotificationThread implements PlugIn {
 
     protected static File directory = IJ.getInstance() == null
-            ? new File("D:\\debugging\\ADAPT Test Data\\ADAPT Test Data\\Adapt_Test_Data")
+            ? new File(System.getProperty("user.dir"))
             : new File(IJ.getDirectory("current")); // root directory
     protected File childDir, // root output directory
             parDir, // output directory for each cell
@@ -115,9 +116,18 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
     private double minLength;
     private int previewSlice;
     private ImageProcessor[] previewImages;
+    private volatile boolean previewCancelled = false;
+    private PreviewFrameCache previewCache;
+    private RunMetrics metrics = new RunMetrics();
     private boolean selectiveOutput = false;
     private Properties props;
     private final String TRAJ_FILE_NAME = "trajectories.csv";
+    private RegionSpatialIndex regionIndex;
+    private SelectionWindow selectionWindow;
+    private VisualisationOutputMode visOutputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private boolean saveBlebDataFiles = true;
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
 
     /**
      * Default constructor
@@ -173,7 +183,7 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         if (directory == null) {
             return;
         }
-        IJ.log(String.format("Using %d parallel processes.\n", Runtime.getRuntime().availableProcessors()));
+        IJ.log(String.format("Using %d parallel processes.\n", nThreads));
         analyse(arg);
         TrajectoryAnalysis ta = new TrajectoryAnalysis(0.0, 0.0, uv.getTimeRes() / 60.0, 0, false, false, false, true, false, new int[]{3, 4, 0, 2});
         ta.run(String.format("%s%s%s", popDir.getAbsolutePath(), File.separator, TRAJ_FILE_NAME));
@@ -182,6 +192,7 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         } catch (IOException e) {
             IJ.log("Failed to create properties file.");
         }
+        saveMetrics();
         IJ.showStatus(TITLE + " done.");
         IJ.log(Time.getDurationAsString(startTime));
     }
@@ -263,8 +274,13 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
                 return;
             }
             uv = GUI.getUv();
+            saveBlebDataFiles = gui.isSaveBlebDataFiles();
+            greyLevels = gui.getGreyLevels();
+            visOutputMode = gui.getVisualisationOutputMode();
             props = gui.getProperties();
         }
+        metrics = new RunMetrics();
+        metrics.start();
         minLength = protMode ? uv.getBlebLenThresh() : uv.getMinLength();
         String pdLabel = protMode ? "Segmenting filopodia..." : "Segmenting cells...";
         cellData = new ArrayList<>();
@@ -296,20 +312,43 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
                 return;
             }
         }
+        regionIndex = new RegionSpatialIndex(width, height);
+        selectionWindow = null;
+        boolean restricted = false;
+        int nFiltered = 0;
         IJ.log(pdLabel);
         for (int i = 0; i < cytoSize; i++) {
 //            if (allMasks != null) {
 //                IJ.saveAs(new ImagePlus("", allMasks), "PNG", String.format("D:\\debugging\\adapt_debug\\output\\%s_%d.png", "AllMasksPreErode", i));
 //            }
             IJ.showStatus(String.format("Segmenting %d%%", (int) Math.round(i * 100.0 / cytoSize)));
-            cytoImage = cytoStack.getProcessor(i + 1).duplicate();
-            (new GaussianBlur()).blurGaussian(cytoImage, uv.getGaussRad(), uv.getGaussRad(), 0.01);
+            PipelineEvents.Span segEvent = PipelineEvents.begin(PipelineEvents.Kind.FRAME_SEGMENTATION).setFrame(i + 1);
+            long stageStart = System.nanoTime();
+            ImageProcessor frameImage = cytoStack.getProcessor(i + 1);
+            cytoImage = frameImage.duplicate();
+            /*
+             With a fixed threshold, only the neighbourhood of the cells being
+             tracked needs smoothing - automatic thresholds depend on the
+             whole frame
+             */
+            if (selectionWindow != null && !uv.isAutoThreshold()) {
+                selectionWindow.blur(frameImage, cytoImage, uv.getGaussRad(), 0.01);
+            } else {
+                (new GaussianBlur()).blurGaussian(cytoImage, uv.getGaussRad(), uv.getGaussRad(), 0.01);
+            }
+            metrics.record(RunMetrics.Stage.PREPROCESSING, stageStart);
+            stageStart = System.nanoTime();
             thresholds[i] = RegionGrower.getThreshold(cytoImage, uv.isAutoThreshold(), uv.getGreyThresh(), uv.getThreshMethod());
             int N = cellData.size();
             if (cytoImage != null) {
                 allRegions.add(RegionGrower.findCellRegions(cytoImage, thresholds[i], cellData));
             }
+            metrics.record(RunMetrics.Stage.REGION_GROWING, stageStart);
+            stageStart = System.nanoTime();
             int fcount = 0;
+            Rectangle frame = new Rectangle(width, height);
+            ImageProcessor[] regionMasks = new ImageProcessor[N];
+            Rectangle[] regionRects = new Rectangle[N];
             for (int j = 0; j < N; j++) {
                 Region current = allRegions.get(i).get(j);
                 if (current != null) {
@@ -321,6 +360,14 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
                     ImageProcessor mask = current.getMask();
 //                    IJ.saveAs(new ImagePlus("", mask), "PNG", String.format("D:\\debugging\\adapt_debug\\output\\%s_%d_%d.png", "MaskPreErode", i, j));
                     current.calcCentroid(mask);
+                    regionIndex.update(j, current.getBounds());
+                    /*
+                     Kept before erosion, so that the region need not build
+                     its full-frame mask again when masks are composited
+                     */
+                    regionRects[j] = current.getBounds().intersection(frame);
+                    mask.setRoi(regionRects[j]);
+                    regionMasks[j] = mask.crop();
                     Rectangle bounds = current.getBounds();
                     bounds.grow(2, 2);
                     mask.setRoi(bounds);
@@ -342,29 +389,60 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
                         cellData.get(j).setInitialRegion(null);
                         cellData.get(j).setEndFrame(i + 1);
                     }
+                } else {
+                    regionIndex.remove(j);
                 }
             }
             if (protMode) {
                 filoStream.println(i + ", " + fcount);
             }
+            /*
+             Cells seeded since the last frame are filtered in turn, so that
+             the tracked area does not creep outwards
+             */
+            if (i == 0 && selectiveOutput) {
+                restricted = restrictToSelection(i, 0);
+            } else if (restricted) {
+                restrictToSelection(i, nFiltered);
+            }
+            nFiltered = cellData.size();
+            if (restricted) {
+                selectionWindow = getSelectionWindow(width, height, SelectionWindow.getBlurSupport(uv.getGaussRad(), 0.01));
+            }
             allMasks = new ByteProcessor(width, height);
             allMasks.setColor(Region.MASK_FOREGROUND);
             allMasks.fill();
             ByteBlitter bb = new ByteBlitter(allMasks);
-            for (int k = 0; k < allRegions.get(i).size(); k++) {
+            long area = 0, boundary = 0;
+            for (int k = 0; k < N; k++) {
                 Region current = allRegions.get(i).get(k);
                 if (current != null) {
-                    ImageProcessor currentMask = current.getMask();
-//                    IJ.saveAs(new ImagePlus("", currentMask), "PNG", String.format("D:\\debugging\\adapt_debug\\output\\%s_%d_%d.png", "MaskPostErode2", i, k));
-                    currentMask.invert();
-                    bb.copyBits(currentMask, 0, 0, Blitter.ADD);
+//                    IJ.saveAs(new ImagePlus("", regionMasks[k]), "PNG", String.format("D:\\debugging\\adapt_debug\\output\\%s_%d_%d.png", "MaskPostErode2", i, k));
+                    /*
+                     Only the region's bounding rectangle is composited -
+                     elsewhere, the inverted mask is zero
+                     */
+                    Rectangle r = regionRects[k];
+                    ImageProcessor regionMask = regionMasks[k];
+                    regionMask.invert();
+                    if (segEvent.isEnabled()) {
+                        area += regionMask.getHistogram()[255 - Region.MASK_FOREGROUND];
+                        boundary += current.getBorderPix().size();
+                    }
+                    bb.copyBits(regionMask, r.x, r.y, Blitter.ADD);
                     current.setFinalMask();
                 }
             }
 //                IJ.saveAs(new ImagePlus("", allMasks), "PNG", String.format("D:\\debugging\\adapt_debug\\output\\%s_%d.png", "AllMasksPostErode", i));
+            if (selectionWindow != null) {
+                selectionWindow.maskOutside(allMasks);
+            }
             if (i > 0) {
                 RegionGrower.initialiseROIs(allMasks, thresholds[i], i + 2, cytoImage, roi, stacks[0].getWidth(), stacks[0].getHeight(), stacks[0].getSize(), cellData, uv, protMode, selectiveOutput);
             }
+            metrics.record(RunMetrics.Stage.SEED_REFINEMENT, stageStart);
+            metrics.addFrames(1);
+            segEvent.setRegionCount(fcount).setPixelCount(area).setBoundaryLength(boundary).commit();
         }
         if (protMode) {
             filoStream.close();
@@ -384,37 +462,53 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
             ArrayList<CellData> filteredCells = filterCells(cellData);
             cellData = filteredCells;
         }
+        metrics.addCells(cellData.size());
         /*
          * Analyse the dynamics of each cell, represented by a series of
          * detected regions.
          */
         if ((uv.isGenVis() || uv.isGetFluorDist()) && !protMode) {
-            MultiThreadedOutputGenerator outGen = new MultiThreadedOutputGenerator(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), cellData,
+            MultiThreadedOutputGenerator outGen = new MultiThreadedOutputGenerator(null, cellData,
                     cellsDir.getAbsolutePath(), protMode, uv, childDir, stacks[1],
                     stacks[0], directory, roi);
+            outGen.setVisualisationOutputMode(visOutputMode);
+            outGen.setMetrics(metrics);
+            outGen.setThreadCount(nThreads);
+            outGen.setSaveBlebDataFiles(saveBlebDataFiles);
+            outGen.setGreyLevels(greyLevels);
             outGen.run();
             if (stacks[1] != null && uv.isGetFluorDist()) {
+                long stageStart = System.nanoTime();
                 saveFluorData(outGen.getFluorData());
+                metrics.record(RunMetrics.Stage.IO, stageStart);
             }
+            long stageStart = System.nanoTime();
             velDir = GenUtils.createDirectory(visDir + delimiter + "Velocity_Visualisation", false);
             curveDir = GenUtils.createDirectory(visDir + delimiter + "Curvature_Visualisation", false);
             genCurveVelVis(cellData);
+            metrics.record(RunMetrics.Stage.VISUALISATION, stageStart);
         } else {
+            long stageStart = System.nanoTime();
             segDir = GenUtils.createDirectory(visDir + delimiter + "Segmentation_Visualisation", false);
             genSimpSegVis(cellData);
+            metrics.record(RunMetrics.Stage.VISUALISATION, stageStart);
         }
         if (uv.isGetMorph()) {
+            long stageStart = System.nanoTime();
             try {
                 getMorphologyData(cellData, true, -1, null, 0.0);
             } catch (IOException e) {
                 GenUtils.logError(e, "Could not save morphological data file.");
             }
+            metrics.record(RunMetrics.Stage.MORPHOLOGY, stageStart);
         }
+        long stageStart = System.nanoTime();
         try {
             generateCellTrajectories(cellData);
         } catch (Exception e) {
             GenUtils.logError(e, "Error: Failed to create cell trajectories file.");
         }
+        metrics.record(RunMetrics.Stage.TRAJECTORIES, stageStart);
 //        File paramFile;
 //        PrintWriter paramStream;
 //        try {
@@ -431,6 +525,62 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
 //        paramStream.close();
     }
 
+    /*
+     * When only selected cells are to be output, the selected cells and those
+     * whose regions border them - and so compete with them for territory -
+     * continue to be tracked after the specified frame. Of the cells from
+     * firstCell onwards, all others are ended there, as if they had been
+     * lost; earlier cells have already been filtered. When filtering from the
+     * first cell, returns false, leaving all cells tracked, if none of the
+     * selected cells was detected.
+     */
+    boolean restrictToSelection(int frame, int firstCell) {
+        int nCells = cellData.size();
+        boolean[] tracked = new boolean[nCells];
+        int nSelected = 0;
+        for (int j = 0; j < nCells; j++) {
+            if (cellData.get(j).isOutput() && regionIndex.contains(j)) {
+                nSelected++;
+                tracked[j] = true;
+                for (int k : regionIndex.query(SelectionWindow.getNeighbourhood(regionIndex.getBounds(j), 0))) {
+                    tracked[k] = true;
+                }
+            }
+        }
+        if (nSelected < 1 && firstCell == 0) {
+            return false;
+        }
+        int nTracked = 0;
+        for (int j = firstCell; j < nCells; j++) {
+            if (tracked[j]) {
+                nTracked++;
+            } else if (regionIndex.contains(j)) {
+                cellData.get(j).setInitialRegion(null);
+                cellData.get(j).setEndFrame(frame + 1);
+                regionIndex.remove(j);
+            }
+        }
+        if (firstCell == 0) {
+            IJ.log(String.format("Tracking %d selected cells and %d neighbouring cells of %d detected.\n",
+                    nSelected, nTracked - nSelected, nCells));
+        }
+        return true;
+    }
+
+    /*
+     * Neighbourhoods of the cells being tracked, each padded by margin, or null
+     * if no cells are tracked.
+     */
+    SelectionWindow getSelectionWindow(int width, int height, int margin) {
+        SelectionWindow window = new SelectionWindow(width, height);
+        for (int j = 0; j < cellData.size(); j++) {
+            if (regionIndex.contains(j)) {
+                window.add(regionIndex.getBounds(j), margin);
+            }
+        }
+        return window.isEmpty() ? null : window;
+    }
+
     ArrayList<CellData> filterCells(ArrayList<CellData> originalCells) {
         ArrayList<CellData> filteredCells = new ArrayList<>();
         for (CellData cell : originalCells) {
@@ -535,60 +685,93 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
 
     public void getMorphologyData(ArrayList<CellData> cellData, boolean saveFile, int measurements, ImageProcessor redirectImage, double blurRadius) throws IOException {
         IJ.log("Generating cell morphology data...\n");
-        ResultsTable rt = Analyzer.getResultsTable();
         if (redirectImage != null) {
             new GaussianBlur().blurGaussian(redirectImage, blurRadius);
             redirectImage.subtract(redirectImage.getMin());
             redirectImage.multiply(1.0 / redirectImage.getMax());
-            Analyzer.setRedirectImage(new ImagePlus("", redirectImage));
         }
-        rt.reset();
-        Prefs.blackBackground = false;
         if (measurements < 0) {
             measurements = Integer.MAX_VALUE;
         }
+        RegionMorphology morphology = new RegionMorphology(measurements, redirectImage != null);
+        String[] headings = morphology.getHeadings();
+        /*
+         Cells are measured in parallel, each into its own buffer of one row per
+         frame; rows are then merged in cell and frame order
+         */
+        ArrayList<Future<double[][]>> rows = new ArrayList<>();
+        ExecutorService exec = Executors.newFixedThreadPool(nThreads);
+        AtomicInteger cellsDone = new AtomicInteger();
         for (int index = 0; index < cellData.size(); index++) {
-            int length = cellData.get(index).getLength();
-            if (length > minLength) {
-                Region[] allRegions = cellData.get(index).getCellRegions();
+            CellData cell = cellData.get(index);
+            if (cell.getLength() > minLength) {
+                rows.add(exec.submit(() -> {
+                    double[][] cellRows = measureMorphology(cell, morphology, redirectImage);
+                    IJ.showStatus(String.format("Morphological analysis %d%% done",
+                            (int) Math.round(cellsDone.incrementAndGet() * 100.0 / cellData.size())));
+                    return cellRows;
+                }));
+            } else {
+                rows.add(null);
+            }
+        }
+        exec.shutdown();
+        ResultsTable rt = new ResultsTable();
+        try {
+            for (int index = 0; index < rows.size(); index++) {
+                if (rows.get(index) == null) {
+                    continue;
+                }
+                double[][] cellRows = rows.get(index).get();
                 int start = cellData.get(index).getStartFrame();
-                int end = cellData.get(index).getEndFrame();
-                for (int h = start - 1; h < end; h++) {
-                    IJ.showStatus(String.format("%d%% morphological analysis done for cell %d of %d",
-                            (int) Math.round((h - start + 1) * 100.0 / (end - start + 1)), (index + 1), cellData.size()));
-                    Region current = allRegions[h];
-                    ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.SHOW_RESULTS,
-                            measurements, rt, 0.0, Double.POSITIVE_INFINITY);
-                    ImagePlus maskImp = new ImagePlus(String.valueOf(index) + "_" + String.valueOf(h),
-                            current.getMask());
-                    analyzer.analyze(maskImp);
-                    saveRegionMorph(current, rt);
+                for (int f = 0; f < cellRows.length; f++) {
+                    if (cellRows[f] == null) {
+                        continue;
+                    }
+                    rt.incrementCounter();
+                    if ((measurements & Measurements.LABELS) != 0) {
+                        rt.addLabel(String.format("%d_%d", index, start - 1 + f));
+                    }
+                    for (int m = 0; m < headings.length; m++) {
+                        rt.addValue(headings[m], cellRows[f][m]);
+                    }
                     rt.addValue("Cell_ID", index);
-                    rt.addValue("Frame", h);
+                    rt.addValue("Frame", start - 1 + f);
                 }
             }
+        } catch (InterruptedException | ExecutionException e) {
+            exec.shutdownNow();
+            throw new IOException("Morphological analysis failed.", e);
         }
         if (saveFile) {
             DataWriter.saveResultsTable(rt, new File(String.format("%s%s%s", popDir.getAbsolutePath(), File.separator, "morphology.csv")));
         }
-        Window w = WindowManager.getWindow(rt.getTitle());
-        if (w != null) {
-            w.dispose();
-        }
-
     }
 
-    void saveRegionMorph(Region region, ResultsTable rt) {
-        String result = rt.getRowAsString(0);
-        Scanner scan = new Scanner(result).useDelimiter("\t");
-        while (scan.hasNext()) {
-            try {
-                region.addMorphMeasure(scan.nextDouble());
-            } catch (InputMismatchException e) {
-                scan.next();
-                region.addMorphMeasure(Double.NaN);
+    /*
+     * Measures one cell in every frame between its start and end, recording
+     * the measurements in each region. Only this cell's regions are touched, so
+     * cells may be measured concurrently.
+     */
+    double[][] measureMorphology(CellData cell, RegionMorphology morphology, ImageProcessor redirectImage) {
+        Region[] allRegions = cell.getCellRegions();
+        int start = cell.getStartFrame();
+        int end = cell.getEndFrame();
+        int nMeasures = morphology.getHeadings().length;
+        double[][] cellRows = new double[end - start + 1][];
+        for (int h = start - 1; h < end; h++) {
+            Region current = allRegions[h];
+            if (current == null) {
+                continue;
             }
+            double[] row = new double[nMeasures];
+            morphology.measure(current.getMask(), current.getBounds(), Region.MASK_FOREGROUND, redirectImage, row, 0);
+            for (double v : row) {
+                current.addMorphMeasure(v);
+            }
+            cellRows[h - start + 1] = row;
         }
+        return cellRows;
     }
 
     @Deprecated
@@ -806,124 +989,80 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
     }
 
     void genCurveVelVis(ArrayList<CellData> cellDatas) {
-        (new MultiThreadedVisualisationGenerator(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()),
-                cellData, protMode, stacks[0], uv, velDir, curveDir)).run();
+        MultiThreadedVisualisationGenerator visGen = new MultiThreadedVisualisationGenerator(null,
+                cellData, protMode, stacks[0], uv, velDir, curveDir);
+        visGen.setOutputMode(visOutputMode);
+        visGen.setThreadCount(nThreads);
+        visGen.run();
     }
 
     void genSimpSegVis(ArrayList<CellData> cellDatas) {
-        int N = cellDatas.size();
-        ImageStack cytoStack = stacks[0];
-        String pdLabel = protMode ? "Building Filopodia Visualisations..." : "Building Cell Visualisations...";
-        ProgressDialog dialog = new ProgressDialog(null, pdLabel, false, TITLE, false);
-        dialog.setVisible(true);
-        /*
-         * Generate various visualisations for output
-         */
-        int width = cytoStack.getWidth();
-        int height = cytoStack.getHeight();
-        int stackSize = cytoStack.getSize();
-        for (int t = 0; t < stackSize; t++) {
-            dialog.updateProgress(t, stackSize);
-            ColorProcessor output = new ColorProcessor(width, height);
-            output.setLineWidth(uv.getVisLineWidth());
-            output.setColor(Color.black);
-            output.fill();
-            for (int n = 0; n < N; n++) {
-                int start = cellDatas.get(n).getStartFrame();
-                int end = cellDatas.get(n).getEndFrame();
-                int length = cellDatas.get(n).getLength();
-                if (length > minLength && t + 1 >= start && t < end) {
-                    Region[] allRegions = cellDatas.get(n).getCellRegions();
-                    Region current = allRegions[t];
-                    short[][] border = current.getOrderedBoundary(width, height, current.getMask(), current.getCentre());
-                    output.setColor(Color.yellow);
-                    int bsize = border.length;
-                    for (int i = 0; i < bsize; i++) {
-                        short[] pix = border[i];
-                        output.drawDot(pix[0], pix[1]);
-                    }
-                    output.setColor(Color.blue);
-                    ArrayList<float[]> centres = current.getCentres();
-                    int cl = centres.size();
-                    int xc = (int) Math.round(centres.get(cl - 1)[0]);
-                    int yc = (int) Math.round(centres.get(cl - 1)[1]);
-                    output.fillOval(xc - 1, yc - 1, 3, 3);
-                    output.drawString(String.valueOf(n + 1), xc + 2, yc + 2);
-                }
-            }
-            IJ.saveAs((new ImagePlus("", output)), "PNG", segDir.getAbsolutePath() + delimiter + numFormat.format(t));
-        }
-        dialog.dispose();
+        MultiThreadedSegmentationVisualiser segVis = new MultiThreadedSegmentationVisualiser(null,
+                cellDatas, protMode, stacks[0], uv, segDir);
+        segVis.setOutputMode(visOutputMode);
+        segVis.setThreadCount(nThreads);
+        segVis.run();
     }
 
-    void generateCellTrajectories(ArrayList<CellData> cellDatas) throws FileNotFoundException, IOException {
-        int N = cellDatas.size();
-        ImageStack cytoStack = stacks[0];
-        String pdLabel = protMode ? "Building Filopodia Trajectories..." : "Building Cell Trajectories...";
-        ProgressDialog dialog = new ProgressDialog(null, pdLabel, false, TITLE, false);
-        dialog.setVisible(true);
-        int stackSize = cytoStack.getSize();
-        int origins[][] = new int[N][2];
-        double distances[] = new double[N];
-        Color colors[] = new Color[N];
-        Random rand = new Random();
-        Arrays.fill(distances, 0.0);
-        ArrayList<ArrayList<Double>> trajData = new ArrayList<ArrayList<Double>>();
-        String[] trajDataHeadings = new String[5];
-        trajDataHeadings[0] = "Frame";
-        trajDataHeadings[1] = "Time (s)";
-        trajDataHeadings[2] = "Cell ID";
-        trajDataHeadings[3] = String.format("Cell_X (%cm)", IJ.micronSymbol);
-        trajDataHeadings[4] = String.format("Cell_Y (%cm)", IJ.micronSymbol);
-        for (int n = 0; n < N; n++) {
-            colors[n] = new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256));
-            if (cellData.get(n).getLength() > minLength) {
-                Region[] allRegions = cellData.get(n).getCellRegions();
-                Region current = allRegions[cellData.get(n).getStartFrame() - 1];
-                ArrayList<float[]> centres = current.getCentres();
-                int cl = centres.size();
-                origins[n][0] = (int) Math.round(centres.get(cl - 1)[0]);
-                origins[n][1] = (int) Math.round(centres.get(cl - 1)[1]);
-            }
-        }
-        for (int n = 0; n < N; n++) {
-            for (int t = 0; t < stackSize; t++) {
-                dialog.updateProgress(n, N);
-                int start = cellData.get(n).getStartFrame();
-                int end = cellData.get(n).getEndFrame();
-                int length = cellData.get(n).getLength();
-                if (length > minLength) {
-                    while (trajData.size() < 5) {
-                        trajData.add(new ArrayList<Double>());
-                    }
-                    if (t + 1 >= start && t < end) {
-                        Region[] allRegions = cellData.get(n).getCellRegions();
-                        Region current = allRegions[t];
-                        ArrayList<float[]> centres = current.getCentres();
-                        int c = centres.size();
-                        double x = centres.get(c - 1)[0];
-                        double y = centres.get(c - 1)[1];
-                        trajData.get(0).add((double) t);
-                        trajData.get(1).add(t * 60.0 / uv.getTimeRes());
-                        trajData.get(2).add((double) n);
-                        trajData.get(3).add(x * uv.getSpatialRes());
-                        trajData.get(4).add(y * uv.getSpatialRes());
-                        if (t + 1 > start) {
-                            Region last = allRegions[t - 1];
-                            ArrayList<float[]> lastCentres = last.getCentres();
-                            int lc = lastCentres.size();
-                            double lx = lastCentres.get(lc - 1)[0];
-                            double ly = lastCentres.get(lc - 1)[1];
-                            distances[n] += Utils.calcDistance(x, y, lx, ly) * uv.getSpatialRes();
-                        }
-                    } else {
-                    }
+    /**
+     * Specify how visualisations should be written to disk. By default, one
+     * image is saved per frame.
+     *
+     * @param visOutputMode output mode
+     */
+    public void setVisualisationOutputMode(VisualisationOutputMode visOutputMode) {
+        this.visOutputMode = visOutputMode;
+    }
 
-                }
-            }
+    /**
+     * Specify the number of threads used for each parallel stage of the
+     * analysis. By default, one thread is used per available processor.
+     *
+     * @param nThreads number of threads
+     */
+    public void setThreadCount(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Specify whether the data for each individual bleb should be saved to
+     * its own file. Averaged bleb data is always saved.
+     *
+     * @param saveBlebDataFiles true if individual files should be saved
+     */
+    public void setSaveBlebDataFiles(boolean saveBlebDataFiles) {
+        this.saveBlebDataFiles = saveBlebDataFiles;
+    }
+
+    /**
+     * Sets the number of grey levels to which signal intensities are
+     * quantised for texture analysis. By default, 256 levels are used.
+     *
+     * @param greyLevels number of grey levels, between 2 and 256
+     */
+    public void setGreyLevels(int greyLevels) {
+        this.greyLevels = greyLevels;
+    }
+
+    /*
+     * Saves the metrics of the last run. This is done once all other outputs
+     * have been written, so that they are included in the bytes written.
+     */
+    void saveMetrics() {
+        if (protMode || parDir == null) {
+            return;
         }
-        DataWriter.saveValues(trajData, new File(String.format("%s%s%s", popDir.getAbsolutePath(), File.separator, TRAJ_FILE_NAME)), trajDataHeadings, null, false);
-        dialog.dispose();
+        try {
+            metrics.save(parDir);
+        } catch (IOException e) {
+            GenUtils.logError(e, "Failed to save run metrics.");
+        }
+    }
+
+    void generateCellTrajectories(ArrayList<CellData> cellDatas) throws IOException {
+        IJ.showStatus(protMode ? "Building Filopodia Trajectories..." : "Building Cell Trajectories...");
+        CellTrajectories trajectories = CellTrajectories.build(cellDatas, minLength, uv.getTimeRes(), uv.getSpatialRes());
+        trajectories.save(new File(String.format("%s%s%s", popDir.getAbsolutePath(), File.separator, TRAJ_FILE_NAME)));
     }
 
     /*
@@ -987,11 +1126,7 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         ByteProcessor binmap = (ByteProcessor) (new TypeConverter(cellData.getGreyVelMap(), true)).convertToByte();
         binmap.invert();
         binmap.threshold((int) Math.floor(-binmap.getStatistics().stdDev + binmap.getStatistics().mean));
-        /*
-         * Protrusions are detected using ParticleAnalyzer and added to an
-         * instance of RoiManager.
-         */
-        binmap.invert(); // Analyzer assumes background is black
+        binmap.invert();
         /*
          Lines are drawn such that protrusions in contact with image edges (t=min, t=max)
          are not excluded from analysis.
@@ -999,19 +1134,16 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         binmap.setColor(0);
         binmap.drawLine(0, 0, 0, binmap.getHeight() - 1);
         binmap.drawLine(binmap.getWidth() - 1, 0, binmap.getWidth() - 1, binmap.getHeight() - 1);
-        Prefs.blackBackground = true;
-        RoiManager manager = new RoiManager(true);
-        ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.ADD_TO_MANAGER
-                + ParticleAnalyzer.EXCLUDE_EDGE_PARTICLES + ParticleAnalyzer.SHOW_MASKS,
-                0, null, 0.0, Double.POSITIVE_INFINITY);
-        RegionGrower.analyzeDetections(manager, binmap, analyzer);
-        ByteProcessor binmapnoedge = (ByteProcessor) analyzer.getOutputImage().getProcessor();
-        ByteProcessor flippedBinMap = new ByteProcessor(binmap.getWidth(), binmap.getHeight());
-        int offset = constructFlippedBinMap(binmap, binmapnoedge, flippedBinMap);
-        RoiManager manager2 = new RoiManager(true);
-        RegionGrower.analyzeDetections(manager2, flippedBinMap, analyzer);
-        copyRoisWithOffset(manager, manager2, offset);
-        cellData.setVelRois(manager.getRoisAsArray());
+        /*
+         * The map is periodic along the cell boundary (y), so protrusions
+         * spanning the top and bottom of the map are labelled as one.
+         */
+        Rectangle[] bounds = PeriodicComponentLabeller.getComponentBounds(binmap, 255);
+        Roi[] velRois = new Roi[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            velRois[i] = new Roi(bounds[i]);
+        }
+        cellData.setVelRois(velRois);
     }
 
     @Deprecated
@@ -1019,27 +1151,23 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         Region regions[] = cellData.getCellRegions();
         ImageStack cyto2 = new ImageStack(stacks[0].getWidth(), stacks[0].getHeight());
         for (int f = start - 1; f < stacks[0].getSize() && f <= stop - 1; f++) {
-            ImageProcessor mask = new ByteProcessor(stacks[0].getWidth(), stacks[0].getHeight());
-            mask.setColor(Region.MASK_BACKGROUND);
-            mask.fill();
+            ImageProcessor mask;
             if (regions[f] != null) {
-                mask = regions[f].getMask();
-                ImageProcessor mask2 = mask.duplicate();
-                for (int j = 0; j < reps; j++) {
-                    mask2.erode();
-                }
-                for (int j = 0; j < reps; j++) {
-                    mask2.dilate();
-                }
+                /*
+                 Opening is performed using distance transforms within the
+                 bounding box of the region, so cost is independent of reps.
+                 */
+                mask = DistanceTransform.getProtrusions(regions[f].getMask(), regions[f].getBounds(),
+                        reps, Region.MASK_FOREGROUND, Region.MASK_BACKGROUND);
+            } else {
+                mask = new ByteProcessor(stacks[0].getWidth(), stacks[0].getHeight());
+                mask.setColor(Region.MASK_BACKGROUND);
+                mask.fill();
                 mask.invert();
-                ByteBlitter bb = new ByteBlitter((ByteProcessor) mask);
-                mask2.invert();
-                bb.copyBits(mask2, 0, 0, Blitter.SUBTRACT);
             }
             double minArea = RegionGrower.getMinFilArea(uv);
             ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.EXCLUDE_EDGE_PARTICLES + ParticleAnalyzer.SHOW_MASKS,
                     0, null, minArea, Double.POSITIVE_INFINITY);
-            mask.invert();
             RegionGrower.analyzeDetections(null, mask, analyzer);
             ImageProcessor analyzerMask = analyzer.getOutputImage().getProcessor();
             analyzerMask.invertLut();
@@ -1515,14 +1643,25 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
      */
     public void generatePreview(int sliceIndex) {
         cellData = new ArrayList<>();
-        ImageProcessor cytoProc = stacks[0].getProcessor(sliceIndex).duplicate();
+        ImageProcessor cytoProc;
+        int threshold;
+        if (previewCache != null) {
+            cytoProc = previewCache.getBlurred(sliceIndex, uv.getGaussRad());
+            checkPreviewCancelled();
+            threshold = previewCache.getThreshold(sliceIndex, uv.getGaussRad(), uv.isAutoThreshold(), uv.getGreyThresh(), uv.getThreshMethod());
+        } else {
+            cytoProc = stacks[0].getProcessor(sliceIndex).duplicate();
+            (new GaussianBlur()).blurGaussian(cytoProc, uv.getGaussRad(), uv.getGaussRad(), 0.01);
+            checkPreviewCancelled();
+            threshold = RegionGrower.getThreshold(cytoProc, uv.isAutoThreshold(), uv.getGreyThresh(), uv.getThreshMethod());
+        }
         int width = cytoProc.getWidth();
         int height = cytoProc.getHeight();
-        (new GaussianBlur()).blurGaussian(cytoProc, uv.getGaussRad(), uv.getGaussRad(), 0.01);
-        int threshold = RegionGrower.getThreshold(cytoProc, uv.isAutoThreshold(), uv.getGreyThresh(), uv.getThreshMethod());
         int nCell = RegionGrower.initialiseROIs(null, -1, sliceIndex, cytoProc, roi, stacks[0].getWidth(), stacks[0].getHeight(), stacks[0].getSize(), cellData, uv, protMode, selectiveOutput);
+        checkPreviewCancelled();
         Region[][] allRegions = new Region[nCell][stacks[0].getSize()];
         ArrayList<Region> detectedRegions = RegionGrower.findCellRegions(cytoProc, threshold, cellData);
+        checkPreviewCancelled();
         for (int k = 0; k < nCell; k++) {
             allRegions[k][sliceIndex - 1] = detectedRegions.get(k);
             cellData.get(k).setCellRegions(allRegions[k]);
@@ -1530,6 +1669,7 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         }
         if (uv.isAnalyseProtrusions()) {
             for (int i = 0; i < nCell; i++) {
+                checkPreviewCancelled();
                 buildOutput(i, 1, true);
                 cellData.get(i).setCurvatureMinima(CurveMapAnalyser.findAllCurvatureExtrema(cellData.get(i),
                         sliceIndex, sliceIndex, true, uv.getMinCurveThresh(),
@@ -1543,11 +1683,16 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         int channels = (stacks[1] == null) ? 1 : 2;
         ImageProcessor regionsOutput[] = new ImageProcessor[channels];
         for (int i = 0; i < channels; i++) {
-            TypeConverter outToColor = new TypeConverter(stacks[i].getProcessor(sliceIndex).duplicate(), true);
-            regionsOutput[i] = outToColor.convertToRGB();
+            if (previewCache != null) {
+                regionsOutput[i] = previewCache.getRGB(i, sliceIndex);
+            } else {
+                TypeConverter outToColor = new TypeConverter(stacks[i].getProcessor(sliceIndex).duplicate(), true);
+                regionsOutput[i] = outToColor.convertToRGB();
+            }
             regionsOutput[i].setLineWidth(uv.getVisLineWidth());
         }
         for (int r = 0; r < nCell; r++) {
+            checkPreviewCancelled();
             Region region = detectedRegions.get(r);
             if (region != null) {
                 ArrayList<float[]> centres = region.getCentres();
@@ -1647,6 +1792,31 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
     public void preparePreview(int slice, UserVariables uv) {
         this.previewSlice = slice;
         this.uv = uv;
+        this.previewCancelled = false;
+    }
+
+    /**
+     * Specify a cache of preprocessed frames, shared between previews, from
+     * which blurred frames, thresholds and RGB base images are taken.
+     *
+     * @param previewCache cache built from the same stacks as this analyser
+     */
+    public void setPreviewCache(PreviewFrameCache previewCache) {
+        this.previewCache = previewCache;
+    }
+
+    /**
+     * Requests that preview generation stops at the next checkpoint, in which
+     * case {@link #generatePreview(int)} throws a CancellationException.
+     */
+    public void cancelPreview() {
+        previewCancelled = true;
+    }
+
+    private void checkPreviewCancelled() {
+        if (previewCancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Preview cancelled.");
+        }
     }
 
     public void doWork() {
@@ -1673,7 +1843,8 @@ public class Analyse_Movie extends NotificationThread implements PlugIn {
         }
         try {
             DataWriter.saveValues(convertedData, new File(String.format("%s%s%s", popDir, File.separator, "fluorescence.csv")),
-                    FluorescenceDistAnalyser.PARAM_HEADINGS, null, false);
+                    FluorescenceDistAnalyser.getParamHeadings(FluorescenceDistAnalyser.DEFAULT_OFFSETS,
+                            FluorescenceDistAnalyser.DEFAULT_DIRECTIONS), null, false);
         } catch (IOException e) {
             GenUtils.logError(e, "Failed to save fluorescence information file.");
         }
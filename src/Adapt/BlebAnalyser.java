@@ -57,6 +57,9 @@ public class BlebAnalyser {
         double[][] yvals = curveMap.getyCoords();
         double[][] noisyVels = cellData.getVelMap().getzVals();
         Rectangle bounds = currentBleb.getBounds();
+        PipelineEvents.Span blebEvent = PipelineEvents.begin(PipelineEvents.Kind.BLEB_SIGNAL)
+                .setBlebIndex(index).setFrame(bounds.x + 1);
+        long pixelCount = 0;
 //        int imageWidth = cytoStack.getWidth();
 //        int imageHeight = cytoStack.getHeight();
         int velMapHeight = cellData.getVelMapWithDetections().getHeight();
@@ -130,6 +133,7 @@ public class BlebAnalyser {
                 for (int y = polyBounds.y - cortexRad; y < polyBounds.y + polyBounds.height + cortexRad; y++) {
                     for (int x = polyBounds.x - cortexRad; x < polyBounds.x + polyBounds.width + cortexRad; x++) {
                         if (blebMask.getPixel(x, y) > 0) {
+                            pixelCount++;
                             double val = sigProc.getPixelValue(x, y);
                             if (val > cellData.getSigThresh()) {
                                 sum += val;
@@ -168,6 +172,7 @@ public class BlebAnalyser {
             }
         }
         currentBleb.setMaxExtent(maxExtent);
+        blebEvent.setFrameCount(totalCount).setPixelCount(pixelCount).setExtent(maxExtent).commit();
         return (((double) zeroCount) / totalCount < uv.getSigRecoveryThresh());
     }
 
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import UtilClasses.GenVariables;
+import ij.gui.Plot;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+/**
+ * Accumulates the time series of individual blebs and calculates the mean and
+ * standard error of each quantity as a function of time since bleb onset.
+ * Series are accumulated as they are added, so nothing needs to be stored or
+ * re-read per bleb.
+ */
+public class BlebDataAggregator {
+
+    private final String[] headings;
+    private final boolean[] normalise;
+    private final double timeStep;
+    private int[] count;
+    private double[][] mean;
+    private double[][] m2;
+    private int length;
+    private int nBlebs;
+
+    /**
+     * Creates a new aggregator.
+     *
+     * @param headings headings of the quantities recorded for each bleb
+     * @param normHeadings headings of those quantities that should be
+     * normalised to the maximum value of each bleb before averaging
+     * @param timeStep time interval between successive values in each series
+     */
+    public BlebDataAggregator(String[] headings, String[] normHeadings, double timeStep) {
+        this.headings = headings;
+        this.timeStep = timeStep;
+        this.normalise = new boolean[headings.length];
+        for (int h = 0; h < headings.length; h++) {
+            for (String n : normHeadings) {
+                if (headings[h].equals(n)) {
+                    normalise[h] = true;
+                }
+            }
+        }
+        this.count = new int[0];
+        this.mean = new double[headings.length][0];
+        this.m2 = new double[headings.length][0];
+        this.length = 0;
+        this.nBlebs = 0;
+    }
+
+    /**
+     * Adds the data for one bleb.
+     *
+     * @param series one array of values per heading, each indexed by time
+     * since bleb onset
+     * @param duration number of valid values in each array
+     */
+    public void addBleb(double[][] series, int duration) {
+        ensureCapacity(duration);
+        for (int h = 0; h < headings.length; h++) {
+            double scale = 1.0;
+            if (normalise[h]) {
+                double max = 0.0;
+                for (int t = 0; t < duration; t++) {
+                    max = Math.max(max, series[h][t]);
+                }
+                if (max > 0.0) {
+                    scale = 1.0 / max;
+                }
+            }
+            for (int t = 0; t < duration; t++) {
+                double v = series[h][t] * scale;
+                int n = count[t] + 1;
+                double delta = v - mean[h][t];
+                mean[h][t] += delta / n;
+                m2[h][t] += delta * (v - mean[h][t]);
+            }
+        }
+        for (int t = 0; t < duration; t++) {
+            count[t]++;
+        }
+        nBlebs++;
+    }
+
+    private void ensureCapacity(int duration) {
+        if (duration <= length) {
+            return;
+        }
+        count = Arrays.copyOf(count, duration);
+        for (int h = 0; h < headings.length; h++) {
+            mean[h] = Arrays.copyOf(mean[h], duration);
+            m2[h] = Arrays.copyOf(m2[h], duration);
+        }
+        length = duration;
+    }
+
+    /**
+     * Returns the number of blebs added so far.
+     *
+     * @return number of blebs
+     */
+    public int getBlebCount() {
+        return nBlebs;
+    }
+
+    /**
+     * Returns the mean of the specified quantity at each time point.
+     *
+     * @param heading heading of the quantity
+     * @return mean values, indexed by time since bleb onset
+     */
+    public double[] getMeans(String heading) {
+        return Arrays.copyOf(mean[getIndex(heading)], length);
+    }
+
+    /**
+     * Returns the standard error of the mean of the specified quantity at
+     * each time point.
+     *
+     * @param heading heading of the quantity
+     * @return standard errors, indexed by time since bleb onset
+     */
+    public double[] getStdErrs(String heading) {
+        int h = getIndex(heading);
+        double[] errs = new double[length];
+        for (int t = 0; t < length; t++) {
+            errs[t] = count[t] > 1 ? Math.sqrt(m2[h][t] / (count[t] - 1) / count[t]) : 0.0;
+        }
+        return errs;
+    }
+
+    /**
+     * Returns the time since bleb onset of each point in the averaged series.
+     *
+     * @return time values
+     */
+    public double[] getTimes() {
+        double[] times = new double[length];
+        for (int t = 0; t < length; t++) {
+            times[t] = t * timeStep;
+        }
+        return times;
+    }
+
+    private int getIndex(String heading) {
+        for (int h = 0; h < headings.length; h++) {
+            if (headings[h].equals(heading)) {
+                return h;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown heading: %s", heading));
+    }
+
+    /**
+     * Saves the mean and standard error of each quantity, together with the
+     * number of blebs contributing at each time point, as a CSV file.
+     * <p>
+     * The file has one row per time point and the columns
+     * {@code Zeroed_Time_(s), N}, followed by {@code Mean_<heading>} and
+     * {@code SE_<heading>} for each heading. This replaces the summary
+     * previously produced by running {@code DataFileAverager} over the
+     * individual bleb files, so scripts that read that summary need to be
+     * updated.
+     *
+     * @param file destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (OutputStreamWriter stream = new OutputStreamWriter(new FileOutputStream(file), GenVariables.UTF8)) {
+            stream.write(StaticVariables.ZEROED_TIME + ",N");
+            for (String h : headings) {
+                stream.write(",Mean_" + h + ",SE_" + h);
+            }
+            stream.write("\n");
+            double[][] errs = new double[headings.length][];
+            for (int h = 0; h < headings.length; h++) {
+                errs[h] = getStdErrs(headings[h]);
+            }
+            for (int t = 0; t < length; t++) {
+                stream.write(String.valueOf(t * timeStep) + "," + count[t]);
+                for (int h = 0; h < headings.length; h++) {
+                    stream.write("," + mean[h][t] + "," + errs[h][t]);
+                }
+                stream.write("\n");
+            }
+        }
+    }
+
+    /**
+     * Generates a plot of the mean of the specified quantity against time,
+     * with standard error bars.
+     *
+     * @param heading heading of the quantity to plot
+     * @return the plot
+     */
+    public Plot getPlot(String heading) {
+        Plot plot = new Plot(String.format("Mean %s (n=%d)", heading, nBlebs),
+                StaticVariables.ZEROED_TIME, heading);
+        plot.addPoints(getTimes(), getMeans(heading), getStdErrs(heading), Plot.LINE);
+        return plot;
+    }
+}
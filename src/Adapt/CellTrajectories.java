@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import Cell.CellData;
+import IAClasses.Region;
+import IO.DataWriter;
+import ij.IJ;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The trajectories of all cells in a movie, held as primitive columns with one
+ * row per cell per frame, in cell then frame order, rather than as a table
+ * of boxed values.
+ */
+public class CellTrajectories {
+
+    public static final String FRAME = "Frame", TIME = "Time (s)", CELL_ID = "Cell ID",
+            X = String.format("Cell_X (%cm)", IJ.micronSymbol), Y = String.format("Cell_Y (%cm)", IJ.micronSymbol);
+    private static final String[] HEADINGS = new String[]{FRAME, TIME, CELL_ID, X, Y};
+    private int[] frames = new int[256];
+    private int[] cellIds = new int[256];
+    private double[] times = new double[256];
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private int size = 0;
+
+    /**
+     * Builds the trajectories of those cells that persist for longer than the
+     * specified number of frames, using the most recent centre of each
+     * cell's region in each frame.
+     *
+     * @param cells the cells to be tracked
+     * @param minLength minimum number of frames for which a cell must persist
+     * @param timeRes temporal resolution, in frames per minute
+     * @param spatialRes spatial resolution, in microns per pixel
+     * @return the trajectories
+     */
+    public static CellTrajectories build(ArrayList<CellData> cells, double minLength, double timeRes, double spatialRes) {
+        CellTrajectories trajectories = new CellTrajectories();
+        for (int n = 0; n < cells.size(); n++) {
+            CellData cell = cells.get(n);
+            if (cell.getLength() <= minLength) {
+                continue;
+            }
+            Region[] allRegions = cell.getCellRegions();
+            for (int t = cell.getStartFrame() - 1; t < cell.getEndFrame(); t++) {
+                if (allRegions[t] == null) {
+                    continue;
+                }
+                ArrayList<float[]> centres = allRegions[t].getCentres();
+                float[] centre = centres.get(centres.size() - 1);
+                trajectories.add(t, t * 60.0 / timeRes, n, centre[0] * spatialRes, centre[1] * spatialRes);
+            }
+        }
+        return trajectories;
+    }
+
+    /**
+     * Adds a point to the end of the trajectory of the specified cell. Points
+     * must be added in cell then frame order.
+     *
+     * @param frame frame index, starting at zero
+     * @param time time, in seconds
+     * @param cellId cell index
+     * @param x x coordinate, in microns
+     * @param y y coordinate, in microns
+     */
+    public void add(int frame, double time, int cellId, double x, double y) {
+        if (size == frames.length) {
+            int capacity = 2 * size;
+            frames = Arrays.copyOf(frames, capacity);
+            cellIds = Arrays.copyOf(cellIds, capacity);
+            times = Arrays.copyOf(times, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        frames[size] = frame;
+        cellIds[size] = cellId;
+        times[size] = time;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFrame(int row) {
+        return frames[row];
+    }
+
+    public double getTime(int row) {
+        return times[row];
+    }
+
+    public int getCellId(int row) {
+        return cellIds[row];
+    }
+
+    public double getX(int row) {
+        return xs[row];
+    }
+
+    public double getY(int row) {
+        return ys[row];
+    }
+
+    public static String[] getHeadings() {
+        return HEADINGS.clone();
+    }
+
+    /**
+     * Saves the trajectories as a CSV file, one column per heading.
+     *
+     * @param file destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        ArrayList<ArrayList<Double>> columns = new ArrayList<>();
+        for (int c = 0; c < HEADINGS.length; c++) {
+            columns.add(new ArrayList<>(size));
+        }
+        for (int i = 0; i < size; i++) {
+            columns.get(0).add((double) frames[i]);
+            columns.get(1).add(times[i]);
+            columns.get(2).add((double) cellIds[i]);
+            columns.get(3).add(xs[i]);
+            columns.get(4).add(ys[i]);
+        }
+        DataWriter.saveValues(columns, file, getHeadings(), null, false);
+    }
+}
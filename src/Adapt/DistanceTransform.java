@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import java.awt.Rectangle;
+
+/**
+ * Contains static methods for Euclidean distance transforms and the binary
+ * morphology built on them. Run time is linear in the number of pixels
+ * processed, irrespective of structuring element radius.
+ */
+public class DistanceTransform {
+
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    /**
+     * Calculates the squared Euclidean distance from every pixel in a
+     * width x height grid to the nearest feature pixel, using the separable
+     * lower-envelope algorithm of Felzenszwalb and Huttenlocher.
+     *
+     * @param feature feature pixels, stored row by row
+     * @param width width of the grid
+     * @param height height of the grid
+     * @return squared distances, stored row by row; if there are no feature
+     * pixels, all values are very large
+     */
+    public static int[] squaredEDT(boolean[] feature, int width, int height) {
+        int[] dist = new int[width * height];
+        for (int i = 0; i < dist.length; i++) {
+            dist[i] = feature[i] ? 0 : INF;
+        }
+        int n = Math.max(width, height);
+        int[] f = new int[n];
+        int[] d = new int[n];
+        int[] v = new int[n];
+        double[] z = new double[n + 1];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                f[y] = dist[y * width + x];
+            }
+            transform1D(f, height, d, v, z);
+            for (int y = 0; y < height; y++) {
+                dist[y * width + x] = d[y];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            System.arraycopy(dist, offset, f, 0, width);
+            transform1D(f, width, d, v, z);
+            System.arraycopy(d, 0, dist, offset, width);
+        }
+        return dist;
+    }
+
+    /*
+     * One-dimensional squared distance transform of sampled function f.
+     */
+    private static void transform1D(int[] f, int n, int[] d, int[] v, double[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = Double.NEGATIVE_INFINITY;
+        z[1] = Double.POSITIVE_INFINITY;
+        for (int q = 1; q < n; q++) {
+            double s = intersect(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersect(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            int dq = q - v[k];
+            d[q] = Math.min(INF, dq * dq + f[v[k]]);
+        }
+    }
+
+    private static double intersect(int[] f, int q, int p) {
+        return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2.0 * (q - p));
+    }
+
+    /**
+     * Performs a morphological opening of the foreground of a binary mask
+     * with a disc of the specified radius. Only pixels within bounds, padded
+     * by one pixel, are processed; everything outside bounds or outside the
+     * image is treated as background.
+     *
+     * @param mask binary mask image
+     * @param bounds bounding box of the foreground in mask - on return, this
+     * is set to the padded box to which the output corresponds
+     * @param radius radius of the disc-shaped structuring element
+     * @param foreground pixel value of the foreground in mask
+     * @return the opened foreground within bounds, stored row by row
+     */
+    public static boolean[] open(ImageProcessor mask, Rectangle bounds, int radius, int foreground) {
+        bounds.grow(1, 1);
+        int w = bounds.width;
+        int h = bounds.height;
+        int imageWidth = mask.getWidth();
+        int imageHeight = mask.getHeight();
+        boolean[] background = new boolean[w * h];
+        for (int y = 0; y < h; y++) {
+            int my = y + bounds.y;
+            for (int x = 0; x < w; x++) {
+                int mx = x + bounds.x;
+                background[y * w + x] = mx < 0 || my < 0 || mx >= imageWidth || my >= imageHeight
+                        || mask.get(mx, my) != foreground;
+            }
+        }
+        int r2 = radius * radius;
+        int[] toBackground = squaredEDT(background, w, h);
+        boolean[] eroded = new boolean[w * h];
+        for (int i = 0; i < eroded.length; i++) {
+            eroded[i] = toBackground[i] > r2;
+        }
+        int[] toEroded = squaredEDT(eroded, w, h);
+        boolean[] opened = new boolean[w * h];
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = !background[i] && toEroded[i] <= r2;
+        }
+        return opened;
+    }
+
+    /**
+     * Isolates protrusions from the specified mask by subtracting the
+     * morphological opening of the foreground from the foreground itself.
+     *
+     * @param mask binary mask image
+     * @param bounds bounding box of the foreground in mask
+     * @param radius radius of the opening; structures narrower than
+     * 2 * radius + 1 are retained
+     * @param foreground pixel value of the foreground in mask
+     * @param background pixel value of the background in mask
+     * @return a new mask, the same size as the input, containing only
+     * protrusions
+     */
+    public static ByteProcessor getProtrusions(ImageProcessor mask, Rectangle bounds, int radius, int foreground, int background) {
+        ByteProcessor output = new ByteProcessor(mask.getWidth(), mask.getHeight());
+        output.setValue(background);
+        output.fill();
+        Rectangle box = new Rectangle(bounds);
+        boolean[] opened = open(mask, box, radius, foreground);
+        Rectangle image = new Rectangle(0, 0, mask.getWidth(), mask.getHeight());
+        Rectangle scan = box.intersection(image);
+        for (int my = scan.y; my < scan.y + scan.height; my++) {
+            for (int mx = scan.x; mx < scan.x + scan.width; mx++) {
+                if (!opened[(my - box.y) * box.width + mx - box.x] && mask.get(mx, my) == foreground) {
+                    output.set(mx, my, foreground);
+                }
+            }
+        }
+        return output;
+    }
+}
@@ -6,27 +6,191 @@
 package Adapt;
 
 import ij.ImagePlus;
-import ij.measure.Measurements;
 import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
-import ij.process.ImageStatistics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.Arrays;
 
 public class FluorescenceDistAnalyser {
 
     ImagePlus imp;
     ImageProcessor mask;
+    Rectangle bounds;
     final int FOREGROUND = 255, BACKGROUND = 0;
-    double[][] glcm;
-    int offset;
+    final int greyLevels;
+    private double rangeMin = Double.NaN, rangeMax = Double.NaN;
+    private int[] levels = new int[0];
+    final int[] offsets;
+    final int[] directions;
+    private final int[] dx, dy;
+    final int[][] glcm;
+    private final int[][] touched;
+    private final int[] nTouched;
+    private final int[] glcmCount;
+    private final double[] contrasts, homogeneities, energies;
     double contrast, homogeneity, energy, mean, std, skew, kurt;
+    private double avgContrast, avgHomogeneity, avgEnergy;
+    private long nPix;
+    private double m2, m3, m4;
 //    public static final String PARAM_HEADINGS = "Contrast\tHomogeneity\tEnergy\tMean\tStandard Deviation\tSkewness\tKurtosis";
     public static final String[] PARAM_HEADINGS = {"Cell ID", "Frame", "Contrast", "Homogeneity", "Energy", "Mean", "Standard Deviation", "Skewness", "Kurtosis"};
+    public static final String[] TEXTURE_HEADINGS = {"Contrast", "Homogeneity", "Energy"};
+    public static final int[] DEFAULT_OFFSETS = {1};
+    public static final int[] DEFAULT_DIRECTIONS = {0, 45, 90, 135};
+    public static final int DEFAULT_GREY_LEVELS = 256;
 
     public FluorescenceDistAnalyser(ImagePlus imp, ImageProcessor mask, int offset) {
+        this(imp, mask, null, new int[]{offset}, new int[]{0});
+    }
+
+    /**
+     * Creates a new analyser, which constructs one grey-level co-occurrence
+     * matrix for every combination of the specified offsets and directions in
+     * a single pass over the masked pixels. The contrast, homogeneity and
+     * energy reported by {@link #getContrast()}, {@link #getHomogeneity()} and
+     * {@link #getEnergy()} are those of the first offset in the first
+     * direction; features for the other combinations, and their averages, are
+     * reported alongside.
+     *
+     * @param imp image to be analysed
+     * @param mask mask defining the region to be analysed, with non-zero
+     * pixels in the foreground
+     * @param bounds bounding box of the foreground in mask - only pixels
+     * within this box are analysed. If null, the whole image is analysed.
+     * @param offsets pixel offsets used to construct the co-occurrence
+     * matrices
+     * @param directions directions, in degrees anticlockwise from the
+     * positive x-axis, used to construct the co-occurrence matrices - each
+     * must be one of 0, 45, 90 or 135
+     */
+    public FluorescenceDistAnalyser(ImagePlus imp, ImageProcessor mask, Rectangle bounds, int[] offsets, int[] directions) {
+        this(imp, mask, bounds, offsets, directions, DEFAULT_GREY_LEVELS);
+    }
+
+    /**
+     * Creates a new analyser, which quantises pixel values to the specified
+     * number of grey levels as they are scanned, so images of any bit depth
+     * may be analysed directly.
+     *
+     * @param imp image to be analysed
+     * @param mask mask defining the region to be analysed, with non-zero
+     * pixels in the foreground
+     * @param bounds bounding box of the foreground in mask - only pixels
+     * within this box are analysed. If null, the whole image is analysed.
+     * @param offsets pixel offsets used to construct the co-occurrence
+     * matrices
+     * @param directions directions, in degrees anticlockwise from the
+     * positive x-axis, used to construct the co-occurrence matrices - each
+     * must be one of 0, 45, 90 or 135
+     * @param greyLevels number of grey levels in the co-occurrence matrices,
+     * between 2 and 256
+     */
+    public FluorescenceDistAnalyser(ImagePlus imp, ImageProcessor mask, Rectangle bounds, int[] offsets, int[] directions, int greyLevels) {
+        if (greyLevels < 2 || greyLevels > 256) {
+            throw new IllegalArgumentException(String.format("Unsupported number of grey levels: %d", greyLevels));
+        }
+        this.greyLevels = greyLevels;
+        this.imp = imp;
+        this.mask = mask;
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.directions = directions;
+        int n = offsets.length * directions.length;
+        this.dx = new int[n];
+        this.dy = new int[n];
+        for (int o = 0; o < offsets.length; o++) {
+            for (int d = 0; d < directions.length; d++) {
+                int p = o * directions.length + d;
+                int[] step = getStep(directions[d]);
+                dx[p] = step[0] * offsets[o];
+                dy[p] = step[1] * offsets[o];
+            }
+        }
+        this.glcm = new int[n][greyLevels * greyLevels];
+        this.touched = new int[n][256];
+        this.nTouched = new int[n];
+        this.glcmCount = new int[n];
+        this.contrasts = new double[n];
+        this.homogeneities = new double[n];
+        this.energies = new double[n];
+    }
+
+    /*
+     * Image y-coordinates increase downwards, so directions above the x-axis
+     * correspond to negative steps in y.
+     */
+    static int[] getStep(int direction) {
+        switch (direction) {
+            case 0:
+                return new int[]{1, 0};
+            case 45:
+                return new int[]{1, -1};
+            case 90:
+                return new int[]{0, -1};
+            case 135:
+                return new int[]{-1, -1};
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported GLCM direction: %d", direction));
+        }
+    }
+
+    /**
+     * Returns the headings of all values recorded for each cell and frame, in
+     * the order they are added to the fluorescence table.
+     *
+     * @param offsets pixel offsets used to construct the co-occurrence
+     * matrices
+     * @param directions directions used to construct the co-occurrence
+     * matrices
+     * @return the headings, with features for the first offset and
+     * direction first, followed by features for each offset and direction
+     * and then features averaged over all offsets and directions
+     */
+    public static String[] getParamHeadings(int[] offsets, int[] directions) {
+        ArrayList<String> headings = new ArrayList<>(Arrays.asList(PARAM_HEADINGS));
+        for (int o : offsets) {
+            for (int d : directions) {
+                for (String h : TEXTURE_HEADINGS) {
+                    headings.add(String.format("%s_D%d_A%d", h, o, d));
+                }
+            }
+        }
+        for (String h : TEXTURE_HEADINGS) {
+            headings.add(String.format("%s_Avg", h));
+        }
+        return headings.toArray(new String[headings.size()]);
+    }
+
+    /**
+     * Sets a new image and mask to be analysed, allowing the analyser, and
+     * its co-occurrence matrices, to be reused.
+     *
+     * @param imp image to be analysed
+     * @param mask mask defining the region to be analysed, with non-zero
+     * pixels in the foreground
+     * @param bounds bounding box of the foreground in mask
+     */
+    public void setInputs(ImagePlus imp, ImageProcessor mask, Rectangle bounds) {
         this.imp = imp;
         this.mask = mask;
-        this.offset = offset;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Sets the intensity range mapped onto the grey levels of the
+     * co-occurrence matrices. Using the same range for every frame of a movie
+     * makes texture features comparable between frames. If no range is set,
+     * 8-bit images use 0-255 and other images use the range of the pixels
+     * being analysed.
+     *
+     * @param min intensity mapped to the lowest grey level
+     * @param max intensity mapped to the highest grey level
+     */
+    public void setIntensityRange(double min, double max) {
+        this.rangeMin = min;
+        this.rangeMax = max;
     }
 
     public void doAnalysis() {
@@ -45,59 +209,228 @@ public class FluorescenceDistAnalyser {
         mask.fill();
     }
 
+    Rectangle getScanBounds() {
+        Rectangle image = new Rectangle(0, 0, imp.getWidth(), imp.getHeight());
+        return bounds == null ? image : bounds.intersection(image);
+    }
+
+    /*
+     * The bounding box of the mask is scanned once, accumulating the central
+     * moments of the raw pixel values and quantising each value to its grey
+     * level. Co-occurrences for all offsets and directions are then counted
+     * from the quantised box. Bins are recorded as they are first touched, so
+     * that statistics can be computed, and the matrices cleared, without
+     * visiting empty bins.
+     */
     void constructGLCM() {
         checkMaskNull();
-        int width = imp.getWidth();
-        int height = imp.getHeight();
         ImageProcessor ip = imp.getProcessor();
-        glcm = new double[256][256];
-        int count = 0;
-        for (int i = 0; i < glcm.length; i++) {
-            Arrays.fill(glcm[i], 0);
-        }
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width - offset; x++) {
-                if (mask.getPixel(x, y) != BACKGROUND && mask.getPixel(x + offset, y) != BACKGROUND) {
-                    glcm[ip.getPixel(x, y)][ip.getPixel(x + offset, y)]++;
-                    count++;
+        Rectangle r = getScanBounds();
+        int w = r.width, h = r.height;
+        if (levels.length < w * h) {
+            levels = new int[w * h];
+        }
+        double[] range = getIntensityRange(ip, r);
+        double scale = range[1] > range[0] ? greyLevels / (range[1] - range[0]) : 0.0;
+        int maxLevel = greyLevels - 1;
+        double[] byteScaling = getByteScaling(ip);
+        nPix = 0;
+        mean = m2 = m3 = m4 = 0.0;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int i = y * w + x;
+                if (mask.get(x + r.x, y + r.y) == BACKGROUND) {
+                    levels[i] = -1;
+                    continue;
                 }
+                double value = ip.getf(x + r.x, y + r.y);
+                addMoments(byteScaling == null ? value : toByte(value, byteScaling));
+                int level = (int) ((value - range[0]) * scale);
+                levels[i] = level < 0 ? 0 : level > maxLevel ? maxLevel : level;
             }
         }
-        int length = glcm.length;
-        for (int j = 0; j < length; j++) {
-            for (int i = 0; i < length; i++) {
-                glcm[i][j] /= count;
+        int n = glcm.length;
+        Arrays.fill(glcmCount, 0);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int level = levels[y * w + x];
+                if (level < 0) {
+                    continue;
+                }
+                int row = level * greyLevels;
+                for (int p = 0; p < n; p++) {
+                    int nx = x + dx[p];
+                    int ny = y + dy[p];
+                    if (nx < 0 || nx >= w || ny < 0 || ny >= h) {
+                        continue;
+                    }
+                    int neighbour = levels[ny * w + nx];
+                    if (neighbour < 0) {
+                        continue;
+                    }
+                    int bin = row + neighbour;
+                    if (glcm[p][bin]++ == 0) {
+                        addTouched(p, bin);
+                    }
+                    glcmCount[p]++;
+                }
+            }
+        }
+    }
+
+    double[] getIntensityRange(ImageProcessor ip, Rectangle r) {
+        if (!Double.isNaN(rangeMin) && !Double.isNaN(rangeMax)) {
+            return new double[]{rangeMin, rangeMax};
+        }
+        if (ip instanceof ByteProcessor) {
+            return new double[]{0.0, 255.0};
+        }
+        double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                if (mask.get(x, y) != BACKGROUND) {
+                    double v = ip.getf(x, y);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
             }
         }
+        return new double[]{min, max};
     }
 
+    private void addTouched(int p, int bin) {
+        if (nTouched[p] >= touched[p].length) {
+            touched[p] = Arrays.copyOf(touched[p], touched[p].length * 2);
+        }
+        touched[p][nTouched[p]++] = bin;
+    }
+
+    /*
+     * One-pass update of the mean and second to fourth central moments, after
+     * Pebay (2008), which avoids the cancellation errors of raw power sums.
+     */
+    /*
+     * Intensity moments are reported on the 0 - 255 scale to which each frame
+     * is mapped by ImageProcessor.convertToByteProcessor(true), as they were
+     * when frames were converted before analysis, so that they stay comparable
+     * whatever the bit depth. Returns the minimum and scale factor of the
+     * mapping, or null for 8-bit images, which are not scaled.
+     */
+    static double[] getByteScaling(ImageProcessor ip) {
+        if (ip instanceof ByteProcessor) {
+            return null;
+        }
+        double min = ip.getMin(), max = ip.getMax();
+        if (ip instanceof FloatProcessor) {
+            return new double[]{min, max > min ? 255.0 / (max - min) : 0.0};
+        }
+        return new double[]{min, 256.0 / (max - min + 1.0)};
+    }
+
+    static double toByte(double value, double[] byteScaling) {
+        int v = (int) ((value - byteScaling[0]) * byteScaling[1] + 0.5);
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+
+    private void addMoments(double v) {
+        long n1 = nPix;
+        nPix++;
+        double delta = v - mean;
+        double deltaN = delta / nPix;
+        double deltaN2 = deltaN * deltaN;
+        double term1 = delta * deltaN * n1;
+        mean += deltaN;
+        m4 += term1 * deltaN2 * (nPix * nPix - 3 * nPix + 3) + 6.0 * deltaN2 * m2 - 4.0 * deltaN * m3;
+        m3 += term1 * deltaN * (nPix - 2) - 3.0 * deltaN * m2;
+        m2 += term1;
+    }
+
+    /*
+     * Moments are defined as in ImageJ's ImageStatistics: the standard
+     * deviation uses n - 1, skewness and kurtosis use the population
+     * variance and kurtosis is given as excess kurtosis.
+     */
     void setStats() {
-        ImageProcessor ip = imp.getProcessor().duplicate();
-        ip.setMask(mask);
-        ImageStatistics stats = ImageStatistics.getStatistics(ip,
-                Measurements.MEAN + Measurements.STD_DEV + Measurements.KURTOSIS + Measurements.SKEWNESS,
-                null);
-        mean = stats.mean;
-        std = stats.stdDev;
-        skew = stats.skewness;
-        kurt = stats.kurtosis;
+        if (nPix < 1) {
+            mean = std = skew = kurt = Double.NaN;
+            return;
+        }
+        std = nPix > 1 ? Math.sqrt(m2 / (nPix - 1)) : 0.0;
+        skew = Math.sqrt(nPix) * m3 / Math.pow(m2, 1.5);
+        kurt = nPix * m4 / (m2 * m2) - 3.0;
     }
 
+    /*
+     * Features are calculated for each co-occurrence matrix and then averaged
+     * over those matrices containing at least one pixel pair.
+     */
     double calcGlcmStats() {
-        int length = glcm.length;
-        contrast = 0.0;
-        energy = 0.0;
-        homogeneity = 0.0;
-        for (int j = 0; j < length; j++) {
-            for (int i = 0; i < length; i++) {
-                contrast += Math.pow(Math.abs(i - j), 2.0) * glcm[i][j];
-                energy += Math.pow(glcm[i][j], 2.0);
-                homogeneity += glcm[i][j] / (1.0 + Math.abs(i - j));
+        avgContrast = 0.0;
+        avgEnergy = 0.0;
+        avgHomogeneity = 0.0;
+        int valid = 0;
+        for (int p = 0; p < glcm.length; p++) {
+            calcGlcmStats(p);
+            if (glcmCount[p] > 0) {
+                avgContrast += contrasts[p];
+                avgEnergy += energies[p];
+                avgHomogeneity += homogeneities[p];
+                valid++;
             }
         }
+        if (valid > 0) {
+            avgContrast /= valid;
+            avgEnergy /= valid;
+            avgHomogeneity /= valid;
+        } else {
+            avgContrast = avgHomogeneity = avgEnergy = Double.NaN;
+        }
+        contrast = contrasts[0];
+        homogeneity = homogeneities[0];
+        energy = energies[0];
         return contrast;
     }
 
+    private void calcGlcmStats(int p) {
+        double c = 0.0, e = 0.0, h = 0.0;
+        int[] m = glcm[p];
+        int[] t = touched[p];
+        for (int b = 0; b < nTouched[p]; b++) {
+            int bin = t[b];
+            double prob = (double) m[bin] / glcmCount[p];
+            int d = Math.abs(bin / greyLevels - bin % greyLevels);
+            c += d * d * prob;
+            e += prob * prob;
+            h += prob / (1.0 + d);
+            m[bin] = 0;
+        }
+        nTouched[p] = 0;
+        if (glcmCount[p] < 1) {
+            c = e = h = Double.NaN;
+        }
+        contrasts[p] = c;
+        energies[p] = e;
+        homogeneities[p] = h;
+    }
+
+    /**
+     * Adds the texture features for each offset and direction, followed by
+     * their averages, to the specified list, in the order given by
+     * {@link #getParamHeadings(int[], int[])}.
+     *
+     * @param data list to which features are added
+     */
+    public void addDirectionalFeatures(ArrayList<Double> data) {
+        for (int p = 0; p < glcm.length; p++) {
+            data.add(contrasts[p]);
+            data.add(homogeneities[p]);
+            data.add(energies[p]);
+        }
+        data.add(avgContrast);
+        data.add(avgHomogeneity);
+        data.add(avgEnergy);
+    }
+
     public double getContrast() {
         return contrast;
     }
@@ -110,6 +443,30 @@ public class FluorescenceDistAnalyser {
         return energy;
     }
 
+    public double getContrast(int offsetIndex, int directionIndex) {
+        return contrasts[offsetIndex * directions.length + directionIndex];
+    }
+
+    public double getHomogeneity(int offsetIndex, int directionIndex) {
+        return homogeneities[offsetIndex * directions.length + directionIndex];
+    }
+
+    public double getEnergy(int offsetIndex, int directionIndex) {
+        return energies[offsetIndex * directions.length + directionIndex];
+    }
+
+    public double getAverageContrast() {
+        return avgContrast;
+    }
+
+    public double getAverageHomogeneity() {
+        return avgHomogeneity;
+    }
+
+    public double getAverageEnergy() {
+        return avgEnergy;
+    }
+
     public double getMean() {
         return mean;
     }
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import UserVariables.UserVariables;
+import UtilClasses.GenVariables;
+import Visualisation.VisualisationOutputMode;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.gui.PointRoi;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs ADAPT from the command line, without ImageJ's user interface, so that
+ * movies can be analysed unattended on machines with no display. All movies
+ * are analysed one after another in the same JVM, so start-up and JIT
+ * compilation costs are paid once per invocation rather than once per movie.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp ... Adapt.HeadlessRunner -p params.properties [-s signal] [-o output]
+ *     [-t threads] [--profile images|sparse|movie] [-q queue] input...
+ * </pre> Each input is a movie file or a folder of movie files. Signal movies,
+ * if any, are paired with the input movies in sorted order. If a queue folder
+ * on a shared filesystem is given, the movies are divided between all runners
+ * started with the same arguments using a {@link WorkQueue}.
+ */
+public class HeadlessRunner {
+
+    public static final String USAGE = "Usage: HeadlessRunner -p <parameter file> [-s <signal movie or folder>]\n"
+            + "       [-o <output folder>] [-t <threads>] [--profile images|sparse|movie]\n"
+            + "       [-q <shared queue folder>]\n"
+            + "       <movie or folder>...";
+    private static final Map<String, BiConsumer<UserVariables, String>> PARAMETERS = new LinkedHashMap<>();
+
+    static {
+        PARAMETERS.put(StaticVariables.GREY_SENS, (uv, v) -> uv.setGreyThresh(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.GEN_VIS, (uv, v) -> uv.setGenVis(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.MIN_CURVE_RANGE, (uv, v) -> uv.setCurveRange(Integer.parseInt(v)));
+        PARAMETERS.put(StaticVariables.USE_SIG_THRESH, (uv, v) -> uv.setUseSigThresh(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.SPAT_RES, (uv, v) -> uv.setSpatialRes(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.CUT_OFF, (uv, v) -> uv.setCutOffTime(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.CORTEX_DEPTH, (uv, v) -> uv.setCortexDepth(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.AUTO_THRESH, (uv, v) -> uv.setAutoThreshold(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.TEMP_FILT_RAD, (uv, v) -> uv.setTempFiltRad(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.SIG_THRESH_FACT, (uv, v) -> uv.setSigThreshFact(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.SPAT_FILT_RAD, (uv, v) -> uv.setSpatFiltRad(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.EROSION, (uv, v) -> uv.setErosion(Integer.parseInt(v)));
+        PARAMETERS.put(StaticVariables.GET_MORPH, (uv, v) -> uv.setGetMorph(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.TIME_RES, (uv, v) -> uv.setTimeRes(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.MIN_CURVE_THRESH, (uv, v) -> uv.setMinCurveThresh(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.ANA_PROT, (uv, v) -> uv.setAnalyseProtrusions(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.DETECT_BLEB, (uv, v) -> uv.setBlebDetect(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.SIG_REC_THRESH, (uv, v) -> uv.setSigRecoveryThresh(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.GAUSS_RAD, (uv, v) -> uv.setGaussRad(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.MIN_TRAJ_LENGTH, (uv, v) -> uv.setMinLength((int) Math.round(Double.parseDouble(v))));
+        PARAMETERS.put(StaticVariables.THRESH_METHOD, (uv, v) -> uv.setThreshMethod(v));
+        PARAMETERS.put(StaticVariables.FILO_MAX_SIZE, (uv, v) -> uv.setFiloSizeMax(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.FILO_MIN_SIZE, (uv, v) -> uv.setFiloSizeMin(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.GEN_SIG_DIST, (uv, v) -> uv.setGetFluorDist(Boolean.parseBoolean(v)));
+        PARAMETERS.put(StaticVariables.MIN_MORPH_AREA, (uv, v) -> uv.setMorphSizeMin(Double.parseDouble(v)));
+        PARAMETERS.put(StaticVariables.VIS_LINE_WIDTH, (uv, v) -> uv.setVisLineWidth(Integer.parseInt(v)));
+    }
+
+    private final ArrayList<File> cytoFiles = new ArrayList<>();
+    private final ArrayList<File> sigFiles = new ArrayList<>();
+    private File paramFile;
+    private File queueDir;
+    private File outputDir = new File(System.getProperty("user.dir"));
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private VisualisationOutputMode outputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private boolean outputModeGiven = false;
+    private boolean saveBlebDataFiles = true;
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(runner.run() ? 0 : 1);
+    }
+
+    /**
+     * Reads the command-line arguments.
+     *
+     * @param args command-line arguments
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    void parseArgs(String[] args) {
+        ArrayList<File> sigInputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-p":
+                case "--params":
+                    paramFile = new File(getValue(args, ++i, arg));
+                    break;
+                case "-s":
+                case "--signal":
+                    sigInputs.add(new File(getValue(args, ++i, arg)));
+                    break;
+                case "-o":
+                case "--output":
+                    outputDir = new File(getValue(args, ++i, arg));
+                    break;
+                case "-t":
+                case "--threads":
+                    try {
+                        nThreads = Integer.parseInt(getValue(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(String.format("Invalid thread count: %s", args[i]));
+                    }
+                    if (nThreads < 1) {
+                        throw new IllegalArgumentException(String.format("Invalid thread count: %s", args[i]));
+                    }
+                    break;
+                case "-q":
+                case "--queue":
+                    queueDir = new File(getValue(args, ++i, arg));
+                    break;
+                case "--profile":
+                    outputMode = getOutputMode(getValue(args, ++i, arg));
+                    outputModeGiven = true;
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException(String.format("Unknown option: %s", arg));
+                    }
+                    cytoFiles.addAll(listMovies(new File(arg)));
+            }
+        }
+        if (paramFile == null) {
+            throw new IllegalArgumentException("No parameter file specified.");
+        }
+        if (cytoFiles.isEmpty()) {
+            throw new IllegalArgumentException("No input movies specified.");
+        }
+        WorkQueue.getKeys(cytoFiles);
+        for (File f : sigInputs) {
+            sigFiles.addAll(listMovies(f));
+        }
+        if (!sigFiles.isEmpty() && sigFiles.size() != cytoFiles.size()) {
+            throw new IllegalArgumentException(String.format("%d input movies but %d signal movies.",
+                    cytoFiles.size(), sigFiles.size()));
+        }
+    }
+
+    private static String getValue(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(String.format("No value given for %s", option));
+        }
+        return args[i];
+    }
+
+    static VisualisationOutputMode getOutputMode(String profile) {
+        switch (profile.toLowerCase()) {
+            case "images":
+                return VisualisationOutputMode.IMAGE_SERIES;
+            case "sparse":
+                return VisualisationOutputMode.SPARSE_TABLE;
+            case "movie":
+                return VisualisationOutputMode.MOVIE;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown output profile: %s", profile));
+        }
+    }
+
+    /**
+     * Lists the movies specified by a command-line input.
+     *
+     * @param input a movie file or a folder of movie files
+     * @return the input itself, or the visible files in the folder in name
+     * order
+     * @throws IllegalArgumentException if the input does not exist
+     */
+    static ArrayList<File> listMovies(File input) {
+        ArrayList<File> movies = new ArrayList<>();
+        if (input.isDirectory()) {
+            File[] files = input.listFiles(f -> f.isFile() && !f.isHidden());
+            Arrays.sort(files);
+            movies.addAll(Arrays.asList(files));
+        } else if (input.isFile()) {
+            movies.add(input);
+        } else {
+            throw new IllegalArgumentException(String.format("Input not found: %s", input));
+        }
+        return movies;
+    }
+
+    /**
+     * Analyses every input movie in turn. A movie that cannot be analysed is
+     * logged and skipped.
+     *
+     * @return true if every movie was analysed
+     */
+    public boolean run() {
+        UserVariables uv;
+        try {
+            uv = readParameters(paramFile);
+            readOptions(loadProperties(paramFile));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(String.format("Could not read parameter file %s: %s", paramFile, e.getMessage()));
+            return false;
+        }
+        uv.setDisplayPlots(false);
+        Analyse_Movie.directory = outputDir;
+        IJ.log(String.format("Analysing %d movies using %d parallel processes.\n", cytoFiles.size(), nThreads));
+        if (queueDir == null) {
+            boolean success = true;
+            for (int f = 0; f < cytoFiles.size(); f++) {
+                success &= analyse(f, uv);
+            }
+            return success;
+        }
+        LinkedHashMap<String, Integer> keys = WorkQueue.getKeys(cytoFiles);
+        WorkQueue queue = null;
+        try {
+            queue = new WorkQueue(queueDir);
+            IJ.log(String.format("Worker %s sharing work queue %s", queue.getWorkerId(), queueDir));
+            return queue.process(new ArrayList<>(keys.keySet()), key -> analyse(keys.get(key), uv));
+        } catch (IOException | InterruptedException e) {
+            System.err.println(String.format("Work queue %s failed: %s", queueDir, e.toString()));
+            return false;
+        } finally {
+            if (queue != null) {
+                queue.shutdown();
+            }
+        }
+    }
+
+    private boolean analyse(int f, UserVariables uv) {
+        File cytoFile = cytoFiles.get(f);
+        try {
+            analyse(cytoFile, sigFiles.isEmpty() ? null : sigFiles.get(f), uv);
+            return true;
+        } catch (Exception e) {
+            IJ.log(String.format("Failed to analyse %s: %s", cytoFile.getName(), e.toString()));
+            return false;
+        }
+    }
+
+    void analyse(File cytoFile, File sigFile, UserVariables uv) throws IOException {
+        IJ.log(String.format("Analysing %s...", cytoFile.getName()));
+        ImageStack[] stacks = new ImageStack[2];
+        ImagePlus cytoImp = IJ.openImage(cytoFile.getAbsolutePath());
+        if (cytoImp == null) {
+            throw new IOException(String.format("Could not open %s", cytoFile));
+        }
+        stacks[0] = cytoImp.getImageStack();
+        if (sigFile != null) {
+            ImagePlus sigImp = IJ.openImage(sigFile.getAbsolutePath());
+            if (sigImp == null) {
+                throw new IOException(String.format("Could not open %s", sigFile));
+            }
+            stacks[1] = sigImp.getImageStack();
+        }
+        PointRoi roi = cytoImp.getRoi() instanceof PointRoi ? (PointRoi) cytoImp.getRoi() : null;
+        Analyse_Movie analyser = new Analyse_Movie(stacks, false, true, uv, null, roi);
+        analyser.setVisualisationOutputMode(outputMode);
+        analyser.setThreadCount(nThreads);
+        analyser.setSaveBlebDataFiles(saveBlebDataFiles);
+        analyser.setGreyLevels(greyLevels);
+        analyser.analyse(cytoFile.getName());
+        analyser.saveMetrics();
+    }
+
+    /**
+     * Reads analysis parameters. A ".csv" file is read in the format used by
+     * {@link Analyse_Batch#readParams(UserVariables, File)}; any other file
+     * is read as a Java properties file, keyed by the parameter labels shown
+     * in the GUI. Parameters not specified keep their default values.
+     *
+     * @param file parameter file
+     * @return the parameters
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    static UserVariables readParameters(File file) throws IOException {
+        UserVariables uv = new UserVariables();
+        if (isCsv(file)) {
+            Analyse_Batch.readParams(uv, file);
+            return uv;
+        }
+        readProperties(uv, loadProperties(file));
+        return uv;
+    }
+
+    private static boolean isCsv(File file) {
+        return file.getName().toLowerCase().endsWith(".csv");
+    }
+
+    /**
+     * Loads a properties parameter file.
+     *
+     * @param file parameter file
+     * @return the properties, which are empty if the file is a ".csv" file
+     * @throws IOException if the file cannot be read
+     */
+    static Properties loadProperties(File file) throws IOException {
+        Properties props = new Properties();
+        if (isCsv(file)) {
+            return props;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), GenVariables.UTF8)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    /**
+     * Reads the output options that are not part of {@link UserVariables},
+     * keyed by their labels in the GUI. Options not specified keep their
+     * current values, and an output profile given on the command line takes
+     * precedence over the saved visualisation output format.
+     *
+     * @param props source properties
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    void readOptions(Properties props) {
+        String value = props.getProperty(StaticVariables.SAVE_BLEB_DATA);
+        if (value != null) {
+            saveBlebDataFiles = Boolean.parseBoolean(value.trim());
+        }
+        value = props.getProperty(StaticVariables.GREY_LEVELS);
+        if (value != null) {
+            try {
+                greyLevels = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                greyLevels = -1;
+            }
+            if (greyLevels < 2 || greyLevels > 256) {
+                throw new IllegalArgumentException(String.format("Invalid value for %s: %s",
+                        StaticVariables.GREY_LEVELS, value));
+            }
+        }
+        value = props.getProperty(StaticVariables.VIS_OUTPUT_MODE);
+        if (value != null && !outputModeGiven) {
+            try {
+                outputMode = VisualisationOutputMode.valueOf(value.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Invalid value for %s: %s",
+                        StaticVariables.VIS_OUTPUT_MODE, value));
+            }
+        }
+    }
+
+    File getParamFile() {
+        return paramFile;
+    }
+
+    int getThreads() {
+        return nThreads;
+    }
+
+    VisualisationOutputMode getVisualisationOutputMode() {
+        return outputMode;
+    }
+
+    boolean isSaveBlebDataFiles() {
+        return saveBlebDataFiles;
+    }
+
+    int getGreyLevels() {
+        return greyLevels;
+    }
+
+    /**
+     * Copies parameters from a set of properties, keyed by the parameter
+     * labels in {@link StaticVariables}.
+     *
+     * @param uv destination parameters
+     * @param props source properties
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    static void readProperties(UserVariables uv, Properties props) {
+        for (Map.Entry<String, BiConsumer<UserVariables, String>> p : PARAMETERS.entrySet()) {
+            String value = props.getProperty(p.getKey());
+            if (value != null) {
+                try {
+                    p.getValue().accept(uv, value.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(String.format("Invalid value for %s: %s", p.getKey(), value));
+                }
+            }
+        }
+    }
+}
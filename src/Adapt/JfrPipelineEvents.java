@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder implementation of {@link PipelineEvents}. This class is
+ * only ever loaded reflectively, once JFR is known to be available.
+ */
+class JfrPipelineEvents implements PipelineEvents.Factory {
+
+    /*
+     Indexed by Kind ordinal - checking the type rather than an instance means
+     nothing is allocated when no recording is in progress
+     */
+    private final EventType[] types = {
+        EventType.getEventType(FrameSegmentationEvent.class),
+        EventType.getEventType(CellOutputEvent.class),
+        EventType.getEventType(BlebSignalEvent.class),
+        EventType.getEventType(FrameVisualisationEvent.class)
+    };
+
+    @Override
+    public PipelineEvents.Span begin(PipelineEvents.Kind kind) {
+        if (!types[kind.ordinal()].isEnabled()) {
+            return PipelineEvents.NO_OP;
+        }
+        PipelineEvent event;
+        switch (kind) {
+            case FRAME_SEGMENTATION:
+                event = new FrameSegmentationEvent();
+                break;
+            case CELL_OUTPUT:
+                event = new CellOutputEvent();
+                break;
+            case BLEB_SIGNAL:
+                event = new BlebSignalEvent();
+                break;
+            default:
+                event = new FrameVisualisationEvent();
+        }
+        event.begin();
+        return event;
+    }
+
+    @Category("Adapt")
+    abstract static class PipelineEvent extends Event implements PipelineEvents.Span {
+
+        @Label("Cell Index")
+        int cellIndex = -1;
+
+        @Label("Bleb Index")
+        int blebIndex = -1;
+
+        @Label("Frame")
+        int frame = -1;
+
+        @Label("Region Count")
+        @Description("Cells detected or labels drawn")
+        int regionCount;
+
+        @Label("Frame Count")
+        @Description("Frames analysed")
+        int frameCount;
+
+        @Label("Pixel Count")
+        @Description("Pixels within the segmented regions or bleb masks")
+        long pixelCount;
+
+        @Label("Boundary Length")
+        @Description("Boundary length of the segmented regions in pixels")
+        long boundaryLength;
+
+        @Label("Extent")
+        @Description("Largest extent of a bleb along the cell boundary, in boundary map rows")
+        int extent;
+
+        @Override
+        public PipelineEvents.Span setCellIndex(int cellIndex) {
+            this.cellIndex = cellIndex;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setBlebIndex(int blebIndex) {
+            this.blebIndex = blebIndex;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setFrame(int frame) {
+            this.frame = frame;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setRegionCount(int regionCount) {
+            this.regionCount = regionCount;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setFrameCount(int frameCount) {
+            this.frameCount = frameCount;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setPixelCount(long pixelCount) {
+            this.pixelCount = pixelCount;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setBoundaryLength(long boundaryLength) {
+            this.boundaryLength = boundaryLength;
+            return this;
+        }
+
+        @Override
+        public PipelineEvents.Span setExtent(int extent) {
+            this.extent = extent;
+            return this;
+        }
+    }
+
+    @Name("adapt.FrameSegmentation")
+    @Label("Frame Segmentation")
+    @Description("Segmentation of all cells in one frame")
+    static class FrameSegmentationEvent extends PipelineEvent {
+    }
+
+    @Name("adapt.CellOutput")
+    @Label("Cell Output")
+    @Description("Construction of one cell's boundary maps")
+    static class CellOutputEvent extends PipelineEvent {
+    }
+
+    @Name("adapt.BlebSignal")
+    @Label("Bleb Signal")
+    @Description("Tracking of one bleb and extraction of its signal")
+    static class BlebSignalEvent extends PipelineEvent {
+    }
+
+    @Name("adapt.FrameVisualisation")
+    @Label("Frame Visualisation")
+    @Description("Rendering of one frame of the velocity and curvature visualisations")
+    static class FrameVisualisationEvent extends PipelineEvent {
+    }
+}
@@ -16,6 +16,10 @@ public class Main {
 //    } 
 
     public static void main(String args[]) {
+        if (args.length > 0) {
+            HeadlessRunner.main(args);
+            return;
+        }
         Analyse_Movie am = new Analyse_Movie();
         am.initialise();
         am.run(null);
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.process.ImageProcessor;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Connected component labelling of binary maps that are periodic in y, such
+ * as velocity and curvature maps, where y indexes position along a closed
+ * cell boundary and the first and last rows are neighbours. Components are
+ * 8-connected and are found with a two-pass union-find scan, so the map is
+ * traversed once regardless of how many components wrap around.
+ */
+public class PeriodicComponentLabeller {
+
+    private int[] parent;
+    private boolean[] seam;
+    private int nLabels;
+
+    private PeriodicComponentLabeller() {
+
+    }
+
+    /**
+     * Finds the bounding boxes of all connected components in a binary map
+     * that is periodic in y.
+     * <p>
+     * Components that wrap around the top and bottom of the map are returned
+     * as a single box starting at the first occupied row after the largest
+     * unoccupied gap, so that y + height may exceed the map height; row
+     * indices should then be interpreted modulo the height.
+     *
+     * @param map binary map
+     * @param foreground pixel value of foreground pixels in map
+     * @return bounding boxes of all components, in raster order of the first
+     * pixel of each component
+     */
+    public static Rectangle[] getComponentBounds(ImageProcessor map, int foreground) {
+        return (new PeriodicComponentLabeller()).label(map, foreground);
+    }
+
+    private Rectangle[] label(ImageProcessor map, int foreground) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int[] labels = new int[width * height];
+        parent = new int[64];
+        seam = new boolean[64];
+        nLabels = 0;
+        /*
+         First pass: assign provisional labels, recording equivalences with
+         the west, north-west, north and north-east neighbours.
+         */
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (map.get(x, y) != foreground) {
+                    continue;
+                }
+                int current = 0;
+                if (x > 0) {
+                    current = merge(current, labels[row + x - 1]);
+                }
+                if (y > 0) {
+                    int above = row - width;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        if (x + dx >= 0 && x + dx < width) {
+                            current = merge(current, labels[above + x + dx]);
+                        }
+                    }
+                }
+                if (current == 0) {
+                    current = newLabel();
+                }
+                labels[row + x] = current;
+            }
+        }
+        /*
+         Join components across the periodic boundary between the last and
+         first rows.
+         */
+        if (height > 1) {
+            int last = (height - 1) * width;
+            for (int x = 0; x < width; x++) {
+                int a = labels[x];
+                if (a == 0) {
+                    continue;
+                }
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (x + dx >= 0 && x + dx < width) {
+                        int b = labels[last + x + dx];
+                        if (b != 0) {
+                            union(a, b);
+                            seam[find(a)] = true;
+                        }
+                    }
+                }
+            }
+        }
+        /*
+         Second pass: resolve equivalences, number components in raster order
+         and accumulate bounding boxes.
+         */
+        int[] compact = new int[nLabels + 1];
+        int nComponents = 0;
+        int[] minX = new int[nLabels], maxX = new int[nLabels];
+        int[] minY = new int[nLabels], maxY = new int[nLabels];
+        boolean[][] rows = new boolean[nLabels][];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int l = labels[row + x];
+                if (l == 0) {
+                    continue;
+                }
+                int root = find(l);
+                int c = compact[root] - 1;
+                if (c < 0) {
+                    c = nComponents++;
+                    compact[root] = c + 1;
+                    minX[c] = x;
+                    maxX[c] = x;
+                    minY[c] = y;
+                    if (seam[root]) {
+                        rows[c] = new boolean[height];
+                    }
+                }
+                if (x < minX[c]) {
+                    minX[c] = x;
+                }
+                if (x > maxX[c]) {
+                    maxX[c] = x;
+                }
+                maxY[c] = y;
+                if (rows[c] != null) {
+                    rows[c][y] = true;
+                }
+            }
+        }
+        Rectangle[] bounds = new Rectangle[nComponents];
+        for (int c = 0; c < nComponents; c++) {
+            int y0 = minY[c];
+            int h = maxY[c] - minY[c] + 1;
+            if (rows[c] != null) {
+                int[] span = getWrappedSpan(rows[c]);
+                y0 = span[0];
+                h = span[1];
+            }
+            bounds[c] = new Rectangle(minX[c], y0, maxX[c] - minX[c] + 1, h);
+        }
+        return bounds;
+    }
+
+    /*
+     * Returns the start row and length of the shortest cyclic interval
+     * covering all occupied rows, which is the complement of the largest
+     * cyclic gap.
+     */
+    static int[] getWrappedSpan(boolean[] rows) {
+        int n = rows.length;
+        int first = -1;
+        for (int y = 0; y < n; y++) {
+            if (rows[y]) {
+                first = y;
+                break;
+            }
+        }
+        if (first < 0) {
+            return new int[]{0, 0};
+        }
+        int bestGap = 0, bestStart = first, gap = 0;
+        for (int i = 1; i <= n; i++) {
+            int y = (first + i) % n;
+            if (rows[y]) {
+                if (gap > bestGap) {
+                    bestGap = gap;
+                    bestStart = y;
+                }
+                gap = 0;
+            } else {
+                gap++;
+            }
+        }
+        if (bestGap == 0) {
+            return new int[]{0, n};
+        }
+        return new int[]{bestStart, n - bestGap};
+    }
+
+    private int newLabel() {
+        nLabels++;
+        if (nLabels >= parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            seam = Arrays.copyOf(seam, seam.length * 2);
+        }
+        parent[nLabels] = nLabels;
+        return nLabels;
+    }
+
+    private int merge(int current, int neighbour) {
+        if (neighbour == 0) {
+            return current;
+        }
+        if (current == 0) {
+            return neighbour;
+        }
+        union(current, neighbour);
+        return current;
+    }
+
+    private int find(int l) {
+        int root = l;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[l] != root) {
+            int next = parent[l];
+            parent[l] = root;
+            l = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (ra < rb) {
+            parent[rb] = ra;
+            seam[ra] |= seam[rb];
+        } else {
+            parent[ra] = rb;
+            seam[rb] |= seam[ra];
+        }
+    }
+}
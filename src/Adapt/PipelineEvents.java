@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+/**
+ * Emits Java Flight Recorder events around the units of work that make up an
+ * analysis - one frame segmented, one cell's outputs built, one bleb's signal
+ * extracted or one frame visualised - so that outlying cells and frames can
+ * be identified in a recording.
+ * <p>
+ * JFR is loaded reflectively, so this class is safe to use on Java runtimes
+ * without it, in which case, as when no recording is in progress, spans are
+ * no-ops that allocate nothing.
+ */
+public final class PipelineEvents {
+
+    public enum Kind {
+        FRAME_SEGMENTATION, CELL_OUTPUT, BLEB_SIGNAL, FRAME_VISUALISATION
+    }
+
+    /**
+     * A unit of work, timed from its creation until {@link #commit()} is
+     * called. Attributes that are not set are recorded as -1 (indices) or 0
+     * (counts).
+     */
+    public interface Span {
+
+        /**
+         * Returns whether the span will be recorded. Attributes that are
+         * costly to compute should only be computed when it will.
+         *
+         * @return false if no recording is in progress
+         */
+        boolean isEnabled();
+
+        Span setCellIndex(int cellIndex);
+
+        Span setBlebIndex(int blebIndex);
+
+        Span setFrame(int frame);
+
+        Span setRegionCount(int regionCount);
+
+        Span setFrameCount(int frameCount);
+
+        Span setPixelCount(long pixelCount);
+
+        Span setBoundaryLength(long boundaryLength);
+
+        Span setExtent(int extent);
+
+        void commit();
+    }
+
+    interface Factory {
+
+        Span begin(Kind kind);
+    }
+
+    static final Span NO_OP = new Span() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public Span setCellIndex(int cellIndex) {
+            return this;
+        }
+
+        @Override
+        public Span setBlebIndex(int blebIndex) {
+            return this;
+        }
+
+        @Override
+        public Span setFrame(int frame) {
+            return this;
+        }
+
+        @Override
+        public Span setRegionCount(int regionCount) {
+            return this;
+        }
+
+        @Override
+        public Span setFrameCount(int frameCount) {
+            return this;
+        }
+
+        @Override
+        public Span setPixelCount(long pixelCount) {
+            return this;
+        }
+
+        @Override
+        public Span setBoundaryLength(long boundaryLength) {
+            return this;
+        }
+
+        @Override
+        public Span setExtent(int extent) {
+            return this;
+        }
+
+        @Override
+        public void commit() {
+        }
+    };
+
+    private static final Factory FACTORY = loadFactory();
+
+    private PipelineEvents() {
+    }
+
+    /**
+     * Starts timing a unit of work.
+     *
+     * @param kind the type of work
+     * @return a span to be committed when the work is complete
+     */
+    public static Span begin(Kind kind) {
+        return FACTORY.begin(kind);
+    }
+
+    private static Factory loadFactory() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Factory) Class.forName("Adapt.JfrPipelineEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return kind -> NO_OP;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import Segmentation.RegionGrower;
+import ij.ImageStack;
+import ij.plugin.filter.GaussianBlur;
+import ij.process.ImageProcessor;
+import ij.process.TypeConverter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the intermediate images used to generate segmentation previews, so
+ * that changes to parameters that do not affect them can be previewed
+ * without repeating the work. Each item is keyed by slice and by the
+ * parameters on which it depends:
+ * <ul>
+ * <li>blurred frames, by Gaussian radius</li>
+ * <li>thresholds, by Gaussian radius and thresholding parameters</li>
+ * <li>RGB versions of each channel, by channel only</li>
+ * </ul>
+ * The least recently used items are discarded once the capacity is reached.
+ * Images are returned as copies, which callers are free to modify.
+ */
+public class PreviewFrameCache {
+
+    private static final String BLURRED = "blurred", THRESHOLD = "threshold", RGB = "rgb";
+    private final ImageStack[] stacks;
+    private final int capacity;
+    private final LinkedHashMap<List<Object>, Object> items;
+
+    /**
+     * Creates a cache using at most one sixteenth of the maximum heap size.
+     *
+     * @param stacks cytoplasmic and signal stacks - the signal stack may be
+     * null
+     */
+    public PreviewFrameCache(ImageStack[] stacks) {
+        this(stacks, Runtime.getRuntime().maxMemory() / 16);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param stacks cytoplasmic and signal stacks - the signal stack may be
+     * null
+     * @param maxBytes approximate maximum memory, in bytes, occupied by cached
+     * images - at least four items are always retained
+     */
+    public PreviewFrameCache(ImageStack[] stacks, long maxBytes) {
+        this.stacks = stacks;
+        long frameBytes = 4L * stacks[0].getWidth() * stacks[0].getHeight();
+        this.capacity = (int) Math.max(4, maxBytes / frameBytes);
+        this.items = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a Gaussian-blurred copy of a slice of the cytoplasmic stack.
+     *
+     * @param slice slice number, from 1 to the stack size
+     * @param gaussRad radius of the Gaussian filter
+     * @return a blurred copy of the slice
+     */
+    public ImageProcessor getBlurred(int slice, double gaussRad) {
+        return getBlurredShared(slice, gaussRad).duplicate();
+    }
+
+    private ImageProcessor getBlurredShared(int slice, double gaussRad) {
+        List<Object> key = Arrays.asList(BLURRED, slice, gaussRad);
+        ImageProcessor blurred = (ImageProcessor) get(key);
+        if (blurred == null) {
+            blurred = stacks[0].getProcessor(slice).duplicate();
+            (new GaussianBlur()).blurGaussian(blurred, gaussRad, gaussRad, 0.01);
+            blurred = (ImageProcessor) put(key, blurred);
+        }
+        return blurred;
+    }
+
+    /**
+     * Returns the segmentation threshold of a slice of the cytoplasmic stack,
+     * calculated from the blurred slice.
+     *
+     * @param slice slice number, from 1 to the stack size
+     * @param gaussRad radius of the Gaussian filter
+     * @param autoThreshold true if the threshold should be determined
+     * automatically
+     * @param greyThresh manually specified threshold
+     * @param threshMethod automatic thresholding method
+     * @return the threshold
+     */
+    public int getThreshold(int slice, double gaussRad, boolean autoThreshold, double greyThresh, String threshMethod) {
+        List<Object> key = Arrays.asList(THRESHOLD, slice, gaussRad, autoThreshold, greyThresh, threshMethod);
+        Integer threshold = (Integer) get(key);
+        if (threshold == null) {
+            threshold = (Integer) put(key, RegionGrower.getThreshold(getBlurredShared(slice, gaussRad),
+                    autoThreshold, greyThresh, threshMethod));
+        }
+        return threshold;
+    }
+
+    /**
+     * Returns an RGB copy of a slice of one of the stacks.
+     *
+     * @param channel index of the stack
+     * @param slice slice number, from 1 to the stack size
+     * @return an RGB copy of the slice
+     */
+    public ImageProcessor getRGB(int channel, int slice) {
+        List<Object> key = Arrays.asList(RGB, channel, slice);
+        ImageProcessor rgb = (ImageProcessor) get(key);
+        if (rgb == null) {
+            rgb = (new TypeConverter(stacks[channel].getProcessor(slice).duplicate(), true)).convertToRGB();
+            rgb = (ImageProcessor) put(key, rgb);
+        }
+        return rgb.duplicate();
+    }
+
+    private Object get(List<Object> key) {
+        synchronized (items) {
+            return items.get(key);
+        }
+    }
+
+    /*
+     * Items are computed outside the lock; should two threads compute the same
+     * item, the first stored is kept.
+     */
+    private Object put(List<Object> key, Object value) {
+        synchronized (items) {
+            Object existing = items.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            items.put(key, value);
+            return value;
+        }
+    }
+
+    public int size() {
+        synchronized (items) {
+            return items.size();
+        }
+    }
+}
@@ -10,32 +10,94 @@ import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.process.ImageProcessor;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
 
+/**
+ * Quantifies the texture and intensity moments of the fluorescence of a cell
+ * in every frame of a signal stack.
+ */
 public class RegionFluorescenceQuantifier {
 
     private final Region[] regions;
     private final ImageStack stack;
     private final ArrayList<ArrayList<Double>> data;
     private final int index;
+    private final int[] offsets;
+    private final int[] directions;
+    private SignalPlaneCache planeCache;
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
 
     public RegionFluorescenceQuantifier(Region[] regions, ImageStack stack, ArrayList<ArrayList<Double>> data, int index) {
+        this(regions, stack, data, index, FluorescenceDistAnalyser.DEFAULT_OFFSETS,
+                FluorescenceDistAnalyser.DEFAULT_DIRECTIONS);
+    }
+
+    /**
+     * Creates a new quantifier that records texture features for the
+     * specified offsets and directions, as well as their average.
+     *
+     * @param regions regions defining the cell in each frame
+     * @param stack signal stack
+     * @param data list to which one row of data per frame is added
+     * @param index cell index
+     * @param offsets pixel offsets used to construct co-occurrence matrices
+     * @param directions directions, in degrees, used to construct
+     * co-occurrence matrices
+     */
+    public RegionFluorescenceQuantifier(Region[] regions, ImageStack stack, ArrayList<ArrayList<Double>> data, int index, int[] offsets, int[] directions) {
         this.regions = regions;
         this.stack = stack;
         this.data = data;
         this.index = index;
+        this.offsets = offsets;
+        this.directions = directions;
+    }
+
+    /**
+     * Specify a cache of 8-bit signal planes shared with other cells, whose
+     * stack-wide intensity range is then used for grey-level quantisation,
+     * so that texture features are comparable between frames and cells.
+     * Without a cache, each frame is quantised as described in
+     * {@link FluorescenceDistAnalyser#setIntensityRange(double, double)}.
+     *
+     * @param planeCache cache of 8-bit versions of the signal stack
+     */
+    public void setPlaneCache(SignalPlaneCache planeCache) {
+        this.planeCache = planeCache;
+    }
+
+    /**
+     * Sets the number of grey levels to which signal intensities are
+     * quantised for texture analysis.
+     *
+     * @param greyLevels number of grey levels, between 2 and 256
+     */
+    public void setGreyLevels(int greyLevels) {
+        this.greyLevels = greyLevels;
     }
 
     public void doQuantification() throws IOException {
         int length = stack.size();
+        FluorescenceDistAnalyser fa = new FluorescenceDistAnalyser(null, null, null, offsets, directions, greyLevels);
+        /*
+         Texture is analysed directly from the signal stack, quantised using
+         the same intensity range for all frames
+         */
+        if (planeCache != null) {
+            double[] range = planeCache.getRange();
+            fa.setIntensityRange(range[0], range[1]);
+        }
         for (int i = 1; i <= length; i++) {
             IJ.showStatus(String.format("Quantifying fluorescence distribution %d%%",(int)Math.round(i * 100.0 / length)));
-            data.add(new ArrayList());
+            data.add(new ArrayList<>());
             if (regions[i - 1] != null) {
+                ImageProcessor sig = stack.getProcessor(i);
                 ImageProcessor mask = regions[i - 1].getMask();
+                Rectangle bounds = new Rectangle(regions[i - 1].getBounds());
                 mask.invert();
-                FluorescenceDistAnalyser fa = new FluorescenceDistAnalyser(new ImagePlus("", stack.getProcessor(i).convertToByteProcessor(true)), mask, 1);
+                fa.setInputs(new ImagePlus("", sig), mask, bounds);
                 fa.doAnalysis();
                 ArrayList<Double> thisData = data.get(i - 1);
                 thisData.add((double) index);
@@ -47,6 +109,7 @@ public class RegionFluorescenceQuantifier {
                 thisData.add(fa.getStd());
                 thisData.add(fa.getSkew());
                 thisData.add(fa.getKurt());
+                fa.addDirectionalFeatures(thisData);
             }
         }
     }
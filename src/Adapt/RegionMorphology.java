@@ -0,0 +1,669 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.measure.Measurements;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures the morphology of a region directly from its mask, without the
+ * use of ImageJ's particle analyser. A single pass over the pixels within the
+ * region's bounds provides area, centroid, bounding rectangle, the moments
+ * from which the best-fitting ellipse is derived and, if an intensity image
+ * is supplied, intensity statistics; the intensity values themselves are
+ * kept only if the mode or median is required. The outer boundary is then traced once
+ * to obtain the perimeter, convex hull and Feret diameters.
+ * <p>
+ * Measurements follow the definitions, units (pixels) and column headings
+ * of ImageJ's ResultsTable. Instances hold no state beyond the selected
+ * measurements and may be shared between threads.
+ */
+public class RegionMorphology implements Measurements {
+
+    public static final String AREA = "Area", MEAN = "Mean", STD_DEV = "StdDev", MIN = "Min", MAX = "Max",
+            X = "X", Y = "Y", XM = "XM", YM = "YM", PERIMETER = "Perim.", BX = "BX", BY = "BY",
+            WIDTH = "Width", HEIGHT = "Height", MAJOR = "Major", MINOR = "Minor", ANGLE = "Angle",
+            CIRC = "Circ.", FERET = "Feret", INT_DEN = "IntDen", RAW_INT_DEN = "RawIntDen",
+            FERET_X = "FeretX", FERET_Y = "FeretY", FERET_ANGLE = "FeretAngle", MIN_FERET = "MinFeret",
+            AR = "AR", ROUND = "Round", SOLIDITY = "Solidity", MODE = "Mode", MEDIAN = "Median",
+            SKEW = "Skew", KURT = "Kurt", AREA_FRACTION = "%Area", SLICE = "Slice";
+    private static final double CORNER_CORRECTION = 2.0 - Math.sqrt(2.0);
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+    private final String[] headings;
+    private final boolean intensity, keepValues;
+
+    /**
+     * Creates a new morphology engine.
+     *
+     * @param measurements sum of the ImageJ {@link Measurements} flags
+     * specifying the measurements to be made
+     * @param intensity true if intensity measurements are to be made, in which
+     * case an intensity image must be supplied to
+     * {@link #measure(ImageProcessor, Rectangle, int, ImageProcessor, double[], int)}
+     */
+    public RegionMorphology(int measurements, boolean intensity) {
+        this.intensity = intensity;
+        ArrayList<String> h = new ArrayList<>();
+        addIf(h, measurements, Measurements.AREA, AREA);
+        if (intensity) {
+            addIf(h, measurements, Measurements.MEAN, MEAN);
+            addIf(h, measurements, Measurements.STD_DEV, STD_DEV);
+            addIf(h, measurements, Measurements.MODE, MODE);
+            addIf(h, measurements, Measurements.MIN_MAX, MIN, MAX);
+        }
+        addIf(h, measurements, Measurements.CENTROID, X, Y);
+        if (intensity) {
+            addIf(h, measurements, Measurements.CENTER_OF_MASS, XM, YM);
+        }
+        addIf(h, measurements, Measurements.PERIMETER, PERIMETER);
+        addIf(h, measurements, Measurements.RECT, BX, BY, WIDTH, HEIGHT);
+        addIf(h, measurements, Measurements.ELLIPSE, MAJOR, MINOR, ANGLE);
+        addIf(h, measurements, Measurements.SHAPE_DESCRIPTORS, CIRC);
+        addIf(h, measurements, Measurements.FERET, FERET);
+        if (intensity) {
+            addIf(h, measurements, Measurements.INTEGRATED_DENSITY, INT_DEN);
+            addIf(h, measurements, Measurements.MEDIAN, MEDIAN);
+            addIf(h, measurements, Measurements.SKEWNESS, SKEW);
+            addIf(h, measurements, Measurements.KURTOSIS, KURT);
+            addIf(h, measurements, Measurements.AREA_FRACTION, AREA_FRACTION);
+            addIf(h, measurements, Measurements.INTEGRATED_DENSITY, RAW_INT_DEN);
+        }
+        addIf(h, measurements, Measurements.STACK_POSITION, SLICE);
+        addIf(h, measurements, Measurements.FERET, FERET_X, FERET_Y, FERET_ANGLE, MIN_FERET);
+        addIf(h, measurements, Measurements.SHAPE_DESCRIPTORS, AR, ROUND, SOLIDITY);
+        this.headings = h.toArray(new String[h.size()]);
+        this.keepValues = h.contains(MODE) || h.contains(MEDIAN);
+    }
+
+    private static void addIf(ArrayList<String> headings, int measurements, int flag, String... names) {
+        if ((measurements & flag) != 0) {
+            headings.addAll(Arrays.asList(names));
+        }
+    }
+
+    /**
+     * Returns the headings of the measurements made, in the order in which
+     * values are returned.
+     *
+     * @return column headings
+     */
+    public String[] getHeadings() {
+        return headings.clone();
+    }
+
+    /**
+     * Measures a region.
+     *
+     * @param mask binary mask of the region
+     * @param bounds rectangle within mask containing all foreground pixels
+     * @param foreground value of foreground pixels in mask
+     * @param image intensity image, or null if no intensity measurements are
+     * to be made
+     * @return one value per heading
+     */
+    public double[] measure(ImageProcessor mask, Rectangle bounds, int foreground, ImageProcessor image) {
+        double[] row = new double[headings.length];
+        measure(mask, bounds, foreground, image, row, 0);
+        return row;
+    }
+
+    /**
+     * Measures a region, writing the results into an existing row buffer.
+     *
+     * @param mask binary mask of the region
+     * @param bounds rectangle within mask containing all foreground pixels
+     * @param foreground value of foreground pixels in mask
+     * @param image intensity image, or null if no intensity measurements are
+     * to be made
+     * @param row buffer into which one value per heading is written
+     * @param offset position in row at which the first value is written
+     */
+    public void measure(ImageProcessor mask, Rectangle bounds, int foreground, ImageProcessor image, double[] row, int offset) {
+        Rectangle r = bounds.intersection(new Rectangle(mask.getWidth(), mask.getHeight()));
+        long n = 0;
+        double sx = 0.0, sy = 0.0, sxx = 0.0, syy = 0.0, sxy = 0.0;
+        double si = 0.0, sii = 0.0, siii = 0.0, siiii = 0.0, six = 0.0, siy = 0.0;
+        long nonZero = 0;
+        float[] values = keepValues && image != null ? new float[r.width * r.height] : null;
+        double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = -1, y1 = -1;
+        int xStart = -1;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                if (mask.get(x, y) != foreground) {
+                    continue;
+                }
+                n++;
+                double cx = x + 0.5, cy = y + 0.5;
+                sx += cx;
+                sy += cy;
+                sxx += cx * cx;
+                syy += cy * cy;
+                sxy += cx * cy;
+                if (x < x0) {
+                    x0 = x;
+                }
+                if (x > x1) {
+                    x1 = x;
+                }
+                if (y < y0) {
+                    y0 = y;
+                    xStart = x;
+                }
+                y1 = y;
+                if (intensity && image != null) {
+                    double v = image.getf(x, y);
+                    if (values != null) {
+                        values[(int) n - 1] = (float) v;
+                    }
+                    if (v != 0.0) {
+                        nonZero++;
+                    }
+                    double v2 = v * v;
+                    si += v;
+                    sii += v2;
+                    siii += v2 * v;
+                    siiii += v2 * v2;
+                    six += v * cx;
+                    siy += v * cy;
+                    if (v < min) {
+                        min = v;
+                    }
+                    if (v > max) {
+                        max = v;
+                    }
+                }
+            }
+        }
+        if (n == 0) {
+            Arrays.fill(row, offset, offset + headings.length, Double.NaN);
+            row[offset + indexOf(AREA, 0)] = 0.0;
+            return;
+        }
+        double xc = sx / n, yc = sy / n;
+        double[] ellipse = fitEllipse(n, sxx / n - xc * xc, syy / n - yc * yc, sxy / n - xc * yc);
+        int[][] outline = traceOutline(mask, foreground, xStart, y0);
+        double perimeter = getTracedPerimeter(outline[0], outline[1], outline[2][0]);
+        double[][] hull = getConvexHull(outline[0], outline[1], outline[2][0]);
+        double[] feret = getFeretValues(hull);
+        double hullArea = getPolygonArea(hull);
+        double mean = si / n;
+        double mean2 = mean * mean;
+        double variance = sii / n - mean2;
+        if (values != null) {
+            Arrays.sort(values, 0, (int) n);
+        }
+        boolean isFloat = image instanceof FloatProcessor;
+        for (int h = 0; h < headings.length; h++) {
+            double v;
+            switch (headings[h]) {
+                case AREA:
+                    v = n;
+                    break;
+                case MEAN:
+                    v = mean;
+                    break;
+                case STD_DEV:
+                    v = n > 1 ? Math.sqrt(Math.max(0.0, (sii - si * mean) / (n - 1))) : 0.0;
+                    break;
+                case MODE:
+                    v = getMode(values, (int) n, isFloat);
+                    break;
+                case MIN:
+                    v = min;
+                    break;
+                case MAX:
+                    v = max;
+                    break;
+                case X:
+                    v = xc;
+                    break;
+                case Y:
+                    v = yc;
+                    break;
+                case XM:
+                    v = si != 0.0 ? six / si : xc;
+                    break;
+                case YM:
+                    v = si != 0.0 ? siy / si : yc;
+                    break;
+                case PERIMETER:
+                    v = perimeter;
+                    break;
+                case BX:
+                    v = x0;
+                    break;
+                case BY:
+                    v = y0;
+                    break;
+                case WIDTH:
+                    v = x1 - x0 + 1;
+                    break;
+                case HEIGHT:
+                    v = y1 - y0 + 1;
+                    break;
+                case MAJOR:
+                    v = ellipse[0];
+                    break;
+                case MINOR:
+                    v = ellipse[1];
+                    break;
+                case ANGLE:
+                    v = ellipse[2];
+                    break;
+                case CIRC:
+                    v = perimeter > 0.0 ? Math.min(1.0, 4.0 * Math.PI * n / (perimeter * perimeter)) : 0.0;
+                    break;
+                case FERET:
+                    v = feret[0];
+                    break;
+                case INT_DEN:
+                    v = n * mean;
+                    break;
+                case MEDIAN:
+                    v = getMedian(values, (int) n, isFloat);
+                    break;
+                case SKEW:
+                    v = ((siii - 3.0 * mean * sii) / n + 2.0 * mean * mean2) / (variance * Math.sqrt(variance));
+                    break;
+                case KURT:
+                    v = ((siiii - 4.0 * mean * siii + 6.0 * mean2 * sii) / n - 3.0 * mean2 * mean2)
+                            / (variance * variance) - 3.0;
+                    break;
+                case AREA_FRACTION:
+                    v = 100.0 * nonZero / n;
+                    break;
+                case SLICE:
+                    v = 1.0;
+                    break;
+                case RAW_INT_DEN:
+                    v = si;
+                    break;
+                case FERET_X:
+                    v = feret[2];
+                    break;
+                case FERET_Y:
+                    v = feret[3];
+                    break;
+                case FERET_ANGLE:
+                    v = feret[1];
+                    break;
+                case MIN_FERET:
+                    v = feret[4];
+                    break;
+                case AR:
+                    v = ellipse[0] / ellipse[1];
+                    break;
+                case ROUND:
+                    v = 4.0 * n / (Math.PI * ellipse[0] * ellipse[0]);
+                    break;
+                case SOLIDITY:
+                    v = hullArea > 0.0 ? n / hullArea : Double.NaN;
+                    break;
+                default:
+                    v = Double.NaN;
+            }
+            row[offset + h] = v;
+        }
+    }
+
+    /**
+     * Returns the index of the specified heading.
+     *
+     * @param heading column heading
+     * @param notFound value returned if the heading is not measured
+     * @return index of heading, or notFound
+     */
+    public int indexOf(String heading, int notFound) {
+        for (int h = 0; h < headings.length; h++) {
+            if (headings[h].equals(heading)) {
+                return h;
+            }
+        }
+        return notFound;
+    }
+
+    /*
+     * Most frequent value, the lowest if several are equally frequent, as
+     * calculated by ImageJ. Floating-point values are binned into 256 bins
+     * between their minimum and maximum and the centre of the fullest bin is
+     * returned. Values must be sorted.
+     */
+    static double getMode(float[] values, int n, boolean binned) {
+        if (!binned) {
+            double mode = values[0];
+            int best = 0;
+            for (int i = 0, run = 0; i < n; i++) {
+                run = i > 0 && values[i] == values[i - 1] ? run + 1 : 1;
+                if (run > best) {
+                    best = run;
+                    mode = values[i];
+                }
+            }
+            return mode;
+        }
+        double min = values[0];
+        double binSize = (values[n - 1] - min) / 256.0;
+        if (binSize == 0.0) {
+            return min;
+        }
+        int[] histogram = new int[256];
+        int modeBin = 0;
+        for (int i = 0; i < n; i++) {
+            int bin = Math.min(255, (int) ((values[i] - min) / binSize));
+            if (++histogram[bin] > histogram[modeBin]) {
+                modeBin = bin;
+            }
+        }
+        return min + (modeBin + 0.5) * binSize;
+    }
+
+    /*
+     * Median as calculated by ImageJ: the mean of the two middle values for
+     * floating-point images and, for integer images, the lower of the two.
+     * Values must be sorted.
+     */
+    static double getMedian(float[] values, int n, boolean isFloat) {
+        if (isFloat && n % 2 == 0) {
+            return (values[n / 2 - 1] + values[n / 2]) / 2.0;
+        }
+        return values[(n + 1) / 2 - 1];
+    }
+
+    /*
+     * Best-fitting ellipse with the same area and second moments as the region,
+     * as calculated by ImageJ's EllipseFitter. Central moments include the
+     * moment of each pixel about its own centre.
+     */
+    static double[] fitEllipse(long n, double u20, double u02, double u11) {
+        u20 += 1.0 / 12.0;
+        u02 += 1.0 / 12.0;
+        double m4 = 4.0 * Math.abs(u02 * u20 - u11 * u11);
+        if (m4 < 1e-6) {
+            m4 = 1e-6;
+        }
+        double a11 = u02 / m4;
+        double a12 = u11 / m4;
+        double a22 = u20 / m4;
+        double tmp = a11 - a22;
+        if (tmp == 0.0) {
+            tmp = 1e-6;
+        }
+        double theta = 0.5 * Math.atan(2.0 * a12 / tmp);
+        if (theta < 0.0) {
+            theta += Math.PI / 2.0;
+        }
+        if (a12 > 0.0) {
+            theta += Math.PI / 2.0;
+        } else if (a12 == 0.0) {
+            if (a22 > a11) {
+                theta = 0.0;
+                tmp = a22;
+                a22 = a11;
+                a11 = tmp;
+            } else if (a11 != a22) {
+                theta = Math.PI / 2.0;
+            }
+        }
+        tmp = Math.sin(theta);
+        if (tmp == 0.0) {
+            tmp = 1e-6;
+        }
+        double z = a12 * Math.cos(theta) / tmp;
+        double major = Math.sqrt(1.0 / Math.abs(a22 + z));
+        double minor = Math.sqrt(1.0 / Math.abs(a11 - z));
+        double scale = Math.sqrt(n / (Math.PI * major * minor));
+        major *= 2.0 * scale;
+        minor *= 2.0 * scale;
+        double angle = 180.0 * theta / Math.PI;
+        if (angle == 180.0) {
+            angle = 0.0;
+        }
+        if (major < minor) {
+            tmp = major;
+            major = minor;
+            minor = tmp;
+        }
+        return new double[]{major, minor, angle};
+    }
+
+    /*
+     * Traces the outer boundary of the 8-connected foreground component
+     * containing the top-most, left-most foreground pixel (x0, y0), along pixel
+     * edges with the foreground on the right. Vertices are pixel corners and
+     * only those at which the direction changes are recorded. Returns x
+     * coordinates, y coordinates and, in a single-element array, the number of
+     * vertices.
+     */
+    static int[][] traceOutline(ImageProcessor mask, int foreground, int x0, int y0) {
+        int[] xp = new int[64];
+        int[] yp = new int[64];
+        int count = 0;
+        int x = x0, y = y0, d = 0;
+        do {
+            x += DX[d];
+            y += DY[d];
+            int next = -1;
+            for (int turn : new int[]{3, 0, 1}) {
+                int e = (d + turn) & 3;
+                if (isEdge(mask, foreground, x, y, e)) {
+                    next = e;
+                    break;
+                }
+            }
+            if (next < 0) {
+                next = (d + 2) & 3;
+            }
+            if (next != d) {
+                if (count == xp.length) {
+                    xp = Arrays.copyOf(xp, 2 * count);
+                    yp = Arrays.copyOf(yp, 2 * count);
+                }
+                xp[count] = x;
+                yp[count] = y;
+                count++;
+            }
+            d = next;
+        } while (x != x0 || y != y0 || d != 0);
+        /*
+         ImageJ's wand lists the same vertices starting one further along,
+         which matters for the traced perimeter's corner count
+         */
+        int firstX = xp[0], firstY = yp[0];
+        System.arraycopy(xp, 1, xp, 0, count - 1);
+        System.arraycopy(yp, 1, yp, 0, count - 1);
+        xp[count - 1] = firstX;
+        yp[count - 1] = firstY;
+        return new int[][]{xp, yp, {count}};
+    }
+
+    /*
+     * The edge leaving vertex (x, y) in direction d is a boundary edge if the
+     * pixel to its right is foreground and the pixel to its left is not.
+     */
+    private static boolean isEdge(ImageProcessor mask, int foreground, int x, int y, int d) {
+        int rx, ry, lx, ly;
+        switch (d) {
+            case 0:
+                rx = x;
+                ry = y;
+                lx = x;
+                ly = y - 1;
+                break;
+            case 1:
+                rx = x - 1;
+                ry = y;
+                lx = x;
+                ly = y;
+                break;
+            case 2:
+                rx = x - 1;
+                ry = y - 1;
+                lx = x - 1;
+                ly = y;
+                break;
+            default:
+                rx = x;
+                ry = y - 1;
+                lx = x - 1;
+                ly = y - 1;
+        }
+        return isForeground(mask, foreground, rx, ry) && !isForeground(mask, foreground, lx, ly);
+    }
+
+    private static boolean isForeground(ImageProcessor mask, int foreground, int x, int y) {
+        return x >= 0 && y >= 0 && x < mask.getWidth() && y < mask.getHeight() && mask.get(x, y) == foreground;
+    }
+
+    /*
+     * Perimeter of a traced outline, as calculated by ImageJ, in which corners
+     * are cut to approximate the boundary more closely than the pixel edges.
+     */
+    static double getTracedPerimeter(int[] xp, int[] yp, int n) {
+        int sumdx = 0;
+        int sumdy = 0;
+        int nCorners = 0;
+        int dx1 = xp[0] - xp[n - 1];
+        int dy1 = yp[0] - yp[n - 1];
+        int side1 = Math.abs(dx1) + Math.abs(dy1);
+        boolean corner = false;
+        for (int i = 0; i < n; i++) {
+            int nexti = i + 1 < n ? i + 1 : 0;
+            int dx2 = xp[nexti] - xp[i];
+            int dy2 = yp[nexti] - yp[i];
+            sumdx += Math.abs(dx1);
+            sumdy += Math.abs(dy1);
+            int side2 = Math.abs(dx2) + Math.abs(dy2);
+            if (side1 > 1 || !corner) {
+                corner = true;
+                nCorners++;
+            } else {
+                corner = false;
+            }
+            dx1 = dx2;
+            dy1 = dy2;
+            side1 = side2;
+        }
+        return sumdx + sumdy - nCorners * CORNER_CORRECTION;
+    }
+
+    /*
+     * Convex hull of the outline vertices, by Andrew's monotone chain, in
+     * counter-clockwise order.
+     */
+    static double[][] getConvexHull(int[] xp, int[] yp, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> xp[a] != xp[b] ? Integer.compare(xp[a], xp[b]) : Integer.compare(yp[a], yp[b]));
+        int[] hull = new int[2 * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && cross(xp, yp, hull[k - 2], hull[k - 1], order[i]) <= 0) {
+                k--;
+            }
+            hull[k++] = order[i];
+        }
+        for (int i = n - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(xp, yp, hull[k - 2], hull[k - 1], order[i]) <= 0) {
+                k--;
+            }
+            hull[k++] = order[i];
+        }
+        int size = Math.max(1, k - 1);
+        double[][] points = new double[2][size];
+        for (int i = 0; i < size; i++) {
+            points[0][i] = xp[hull[i]];
+            points[1][i] = yp[hull[i]];
+        }
+        return points;
+    }
+
+    private static long cross(int[] xp, int[] yp, int o, int a, int b) {
+        return (long) (xp[a] - xp[o]) * (yp[b] - yp[o]) - (long) (yp[a] - yp[o]) * (xp[b] - xp[o]);
+    }
+
+    static double getPolygonArea(double[][] points) {
+        int n = points[0].length;
+        double area = 0.0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            area += points[0][i] * points[1][j] - points[0][j] * points[1][i];
+        }
+        return Math.abs(area) / 2.0;
+    }
+
+    /*
+     * Maximum caliper (Feret) diameter, its angle in degrees (0 - 180) and
+     * starting point, as defined by ImageJ, and the minimum caliper width,
+     * found by rotating calipers over the convex hull.
+     */
+    static double[] getFeretValues(double[][] hull) {
+        double[] xp = hull[0];
+        double[] yp = hull[1];
+        int n = xp.length;
+        double diameter = 0.0;
+        int p1 = 0, p2 = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double dx = xp[i] - xp[j];
+                double dy = yp[i] - yp[j];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d > diameter) {
+                    diameter = d;
+                    p1 = i;
+                    p2 = j;
+                }
+            }
+        }
+        double x1 = xp[p1], y1 = yp[p1], x2 = xp[p2], y2 = yp[p2];
+        if (x1 > x2) {
+            double tmp = x1;
+            x1 = x2;
+            x2 = tmp;
+            tmp = y1;
+            y1 = y2;
+            y2 = tmp;
+        }
+        double angle = Math.toDegrees(Math.atan2(y1 - y2, x2 - x1));
+        if (angle < 0.0) {
+            angle += 180.0;
+        }
+        double minFeret = n > 2 ? Double.MAX_VALUE : 0.0;
+        for (int i = 0; n > 2 && i < n; i++) {
+            int j = (i + 1) % n;
+            double ex = xp[j] - xp[i];
+            double ey = yp[j] - yp[i];
+            double len = Math.sqrt(ex * ex + ey * ey);
+            if (len == 0.0) {
+                continue;
+            }
+            double width = 0.0;
+            for (int k = 0; k < n; k++) {
+                width = Math.max(width, Math.abs((xp[k] - xp[i]) * ey - (yp[k] - yp[i]) * ex) / len);
+            }
+            minFeret = Math.min(minFeret, width);
+        }
+        return new double[]{diameter, angle, x1, y1, minFeret};
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the image, recording which regions' bounding rectangles
+ * overlap each grid cell, so that the regions near a rectangle can be found
+ * without visiting every region. Regions are identified by their
+ * cell index and the index is updated incrementally as regions move from
+ * frame to frame.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class RegionSpatialIndex {
+
+    public static final int DEFAULT_CELL_SIZE = 32;
+    private final int cellSize, cols, rows;
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private Rectangle[] bounds = new Rectangle[16];
+    private int[] stamps = new int[16];
+    private int stamp = 0;
+    private int size = 0;
+
+    /**
+     * Creates an empty index using the default grid cell size.
+     *
+     * @param width image width
+     * @param height image height
+     */
+    public RegionSpatialIndex(int width, int height) {
+        this(width, height, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param width image width
+     * @param height image height
+     * @param cellSize width and height, in pixels, of each grid cell - ideally
+     * comparable to the size of a typical region
+     */
+    public RegionSpatialIndex(int width, int height, int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        this.cols = Math.max(1, (width + this.cellSize - 1) / this.cellSize);
+        this.rows = Math.max(1, (height + this.cellSize - 1) / this.cellSize);
+        this.buckets = new int[cols * rows][];
+        this.bucketSizes = new int[cols * rows];
+    }
+
+    /**
+     * Adds a region to the index, or moves it if it is already present.
+     *
+     * @param id region (cell) index
+     * @param regionBounds bounding rectangle of the region
+     */
+    public void update(int id, Rectangle regionBounds) {
+        remove(id);
+        ensureCapacity(id);
+        Rectangle r = new Rectangle(regionBounds);
+        bounds[id] = r;
+        int[] span = getSpan(r);
+        for (int j = span[1]; j <= span[3]; j++) {
+            for (int i = span[0]; i <= span[2]; i++) {
+                add(j * cols + i, id);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes a region from the index, if present.
+     *
+     * @param id region (cell) index
+     */
+    public void remove(int id) {
+        if (!contains(id)) {
+            return;
+        }
+        int[] span = getSpan(bounds[id]);
+        for (int j = span[1]; j <= span[3]; j++) {
+            for (int i = span[0]; i <= span[2]; i++) {
+                int b = j * cols + i;
+                int[] ids = buckets[b];
+                for (int k = 0; k < bucketSizes[b]; k++) {
+                    if (ids[k] == id) {
+                        ids[k] = ids[--bucketSizes[b]];
+                        break;
+                    }
+                }
+            }
+        }
+        bounds[id] = null;
+        size--;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < bounds.length && bounds[id] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Rectangle getBounds(int id) {
+        return contains(id) ? new Rectangle(bounds[id]) : null;
+    }
+
+    /**
+     * Finds the regions whose bounding rectangles intersect a rectangle.
+     *
+     * @param r search rectangle
+     * @return indices of regions, in ascending order
+     */
+    public int[] query(Rectangle r) {
+        int[] found = new int[8];
+        int n = 0;
+        int[] span = getSpan(r);
+        stamp++;
+        for (int j = span[1]; j <= span[3]; j++) {
+            for (int i = span[0]; i <= span[2]; i++) {
+                int b = j * cols + i;
+                for (int k = 0; k < bucketSizes[b]; k++) {
+                    int id = buckets[b][k];
+                    if (stamps[id] != stamp && bounds[id].intersects(r)) {
+                        stamps[id] = stamp;
+                        if (n == found.length) {
+                            found = Arrays.copyOf(found, 2 * n);
+                        }
+                        found[n++] = id;
+                    }
+                }
+            }
+        }
+        found = Arrays.copyOf(found, n);
+        Arrays.sort(found);
+        return found;
+    }
+
+    private int[] getSpan(Rectangle r) {
+        return new int[]{clamp(Math.floorDiv(r.x, cellSize), cols), clamp(Math.floorDiv(r.y, cellSize), rows),
+            clamp(Math.floorDiv(r.x + r.width - 1, cellSize), cols), clamp(Math.floorDiv(r.y + r.height - 1, cellSize), rows)};
+    }
+
+    private static int clamp(int v, int n) {
+        return v < 0 ? 0 : v >= n ? n - 1 : v;
+    }
+
+    private void add(int b, int id) {
+        if (buckets[b] == null) {
+            buckets[b] = new int[4];
+        } else if (bucketSizes[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], 2 * bucketSizes[b]);
+        }
+        buckets[b][bucketSizes[b]++] = id;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < bounds.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, 2 * bounds.length);
+        bounds = Arrays.copyOf(bounds, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import UtilClasses.GenVariables;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings and counts for the stages of an analysis run and writes
+ * them as a JSON report. Stages may be recorded concurrently from any number
+ * of threads; the time recorded for a stage is the total over all threads
+ * that carried it out, so stages that run in parallel can exceed the wall
+ * time of the run.
+ * <p>
+ * Heap usage is sampled whenever a stage is recorded, and the largest sample
+ * is reported as the peak. The heap is shared by the whole JVM, so the peak
+ * includes memory used by anything running alongside the analysis.
+ */
+public class RunMetrics {
+
+    public static final String REPORT_FILE_NAME = "metrics.json";
+
+    public enum Stage {
+        PREPROCESSING("preprocessing"),
+        REGION_GROWING("regionGrowing"),
+        SEED_REFINEMENT("seedRefinement"),
+        MAP_BUILDING("mapBuilding"),
+        SMOOTHING("smoothing"),
+        CORRELATION("correlation"),
+        BLEB_ANALYSIS("blebAnalysis"),
+        FLUORESCENCE("fluorescence"),
+        VISUALISATION("visualisation"),
+        MORPHOLOGY("morphology"),
+        TRAJECTORIES("trajectories"),
+        IO("io");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+    private final LongAdder[] stageCalls = new LongAdder[Stage.values().length];
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder cells = new LongAdder();
+    private final LongAccumulator peakHeap = new LongAccumulator(Math::max, 0L);
+    private long startNanos;
+    private long startCpuNanos;
+
+    public RunMetrics() {
+        for (int s = 0; s < stageNanos.length; s++) {
+            stageNanos[s] = new LongAdder();
+            stageCalls[s] = new LongAdder();
+        }
+        startNanos = System.nanoTime();
+        startCpuNanos = -1;
+    }
+
+    /**
+     * Marks the start of the run, from which wall time, processor time and
+     * peak heap usage are measured.
+     */
+    public void start() {
+        peakHeap.reset();
+        sampleHeap();
+        startCpuNanos = getProcessCpuNanos();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since startNanos to the specified stage.
+     *
+     * @param stage the stage
+     * @param startNanos value of {@link System#nanoTime()} at the start of the
+     * stage
+     */
+    public void record(Stage stage, long startNanos) {
+        stageNanos[stage.ordinal()].add(System.nanoTime() - startNanos);
+        stageCalls[stage.ordinal()].increment();
+        sampleHeap();
+    }
+
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeap.accumulate(runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Returns the largest heap usage sampled since the start of the run.
+     *
+     * @return peak heap usage, in bytes
+     */
+    public long getPeakHeapBytes() {
+        return peakHeap.get();
+    }
+
+    public void addFrames(int n) {
+        frames.add(n);
+    }
+
+    public void addCells(int n) {
+        cells.add(n);
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    public long getStageCalls(Stage stage) {
+        return stageCalls[stage.ordinal()].sum();
+    }
+
+    /**
+     * Writes the report to {@link #REPORT_FILE_NAME} in the specified
+     * directory. The number of bytes written by the run is taken to be the
+     * total size of all files in that directory, so the report should be
+     * saved once all other outputs have been written.
+     *
+     * @param outputDir the run's output directory
+     * @throws IOException if the report cannot be written
+     */
+    public void save(File outputDir) throws IOException {
+        sampleHeap();
+        String report = toJson(getDirectorySize(outputDir));
+        try (OutputStreamWriter stream = new OutputStreamWriter(new FileOutputStream(new File(outputDir, REPORT_FILE_NAME)), GenVariables.UTF8)) {
+            stream.write(report);
+        }
+    }
+
+    String toJson(long bytesWritten) {
+        double wall = (System.nanoTime() - startNanos) / 1.0e9;
+        long cpuNanos = getProcessCpuNanos();
+        double cpu = cpuNanos >= 0 && startCpuNanos >= 0 ? (cpuNanos - startCpuNanos) / 1.0e9 : Double.NaN;
+        int processors = Runtime.getRuntime().availableProcessors();
+        StringBuilder json = new StringBuilder("{\n");
+        appendField(json, "version", String.valueOf(StaticVariables.VERSION));
+        appendField(json, "processors", String.valueOf(processors));
+        appendField(json, "wallTimeSeconds", formatNumber(wall));
+        appendField(json, "cpuTimeSeconds", formatNumber(cpu));
+        appendField(json, "threadUtilisation", formatNumber(cpu / (wall * processors)));
+        appendField(json, "frames", String.valueOf(frames.sum()));
+        appendField(json, "cells", String.valueOf(cells.sum()));
+        appendField(json, "framesPerSecond", formatNumber(frames.sum() / wall));
+        appendField(json, "cellsPerSecond", formatNumber(cells.sum() / wall));
+        appendField(json, "bytesWritten", String.valueOf(bytesWritten));
+        appendField(json, "peakHeapBytes", String.valueOf(getPeakHeapBytes()));
+        json.append("  \"stages\": {\n");
+        Stage[] stages = Stage.values();
+        for (int s = 0; s < stages.length; s++) {
+            json.append(String.format(Locale.ROOT, "    \"%s\": {\"seconds\": %s, \"calls\": %d}%s\n",
+                    stages[s].getKey(), formatNumber(stageNanos[s].sum() / 1.0e9),
+                    stageCalls[s].sum(), s < stages.length - 1 ? "," : ""));
+        }
+        json.append("  }\n}\n");
+        return json.toString();
+    }
+
+    private void appendField(StringBuilder json, String name, String value) {
+        json.append(String.format("  \"%s\": %s,\n", name, value));
+    }
+
+    /*
+     * JSON has no representation of NaN or infinity.
+     */
+    static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+
+    static long getDirectorySize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return size;
+        }
+        for (File f : files) {
+            size += f.isDirectory() ? getDirectorySize(f) : f.length();
+        }
+        return size;
+    }
+
+    static long getProcessCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
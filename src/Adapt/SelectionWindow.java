@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import IAClasses.Region;
+import ij.measure.Measurements;
+import ij.plugin.filter.GaussianBlur;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ImageStatistics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The areas of a frame within which the cells being tracked can be expected
+ * to lie in the next frame, used to restrict segmentation when only selected
+ * cells are to be output. Each cell contributes its own neighbourhood - the
+ * neighbourhoods are not merged into a single bounding rectangle, which for
+ * cells far apart could cover most of the frame.
+ * <p>
+ * Each neighbourhood is padded by the support of the Gaussian blur, so that
+ * cells growing to the edge of their neighbourhood are segmented from fully
+ * blurred pixels, and everything outside the window is treated as background.
+ */
+public class SelectionWindow {
+
+    private final Rectangle frame;
+    private final ArrayList<Rectangle> areas = new ArrayList<>();
+
+    /**
+     * Creates an empty window.
+     *
+     * @param width image width
+     * @param height image height
+     */
+    public SelectionWindow(int width, int height) {
+        this.frame = new Rectangle(width, height);
+    }
+
+    /**
+     * Adds the neighbourhood of a region to the window.
+     *
+     * @param bounds bounding rectangle of the region
+     * @param margin additional margin, in pixels - normally the support of
+     * the blur, as returned by {@link #getBlurSupport(double, double)}
+     */
+    public void add(Rectangle bounds, int margin) {
+        Rectangle r = getNeighbourhood(bounds, margin).intersection(frame);
+        if (!r.isEmpty()) {
+            areas.add(r);
+        }
+    }
+
+    public boolean isEmpty() {
+        return areas.isEmpty();
+    }
+
+    public List<Rectangle> getAreas() {
+        return areas;
+    }
+
+    /**
+     * A region's bounds, extended on every side by half the region's larger
+     * dimension, plus a margin.
+     *
+     * @param bounds bounding rectangle of the region
+     * @param margin additional margin, in pixels
+     * @return the neighbourhood
+     */
+    public static Rectangle getNeighbourhood(Rectangle bounds, int margin) {
+        Rectangle r = new Rectangle(bounds);
+        int extra = Math.max(r.width, r.height) / 2 + margin;
+        r.grow(extra, extra);
+        return r;
+    }
+
+    /**
+     * Returns the distance, in pixels, beyond which a Gaussian blur has no
+     * effect.
+     *
+     * @param sigma standard deviation of the Gaussian
+     * @param accuracy accuracy of the kernel, as for
+     * {@link GaussianBlur#blurGaussian(ImageProcessor, double, double, double)}
+     * @return the kernel support
+     */
+    public static int getBlurSupport(double sigma, double accuracy) {
+        return (int) Math.ceil(sigma * Math.sqrt(-2.0 * Math.log(accuracy))) + 1;
+    }
+
+    /**
+     * Applies a Gaussian blur within the window only. Each area is blurred
+     * from the source image, padded by the support of the filter, so pixels
+     * within the window take the same values as if the whole frame had been
+     * blurred, however the areas overlap. Pixels outside the window are set
+     * to the minimum of the source, so that no region can grow there.
+     *
+     * @param source unblurred image, which is not modified
+     * @param output image, of the same size as the source, to which blurred
+     * areas are written
+     * @param sigma standard deviation of the Gaussian
+     * @param accuracy accuracy of the kernel, as for
+     * {@link GaussianBlur#blurGaussian(ImageProcessor, double, double, double)}
+     */
+    public void blur(ImageProcessor source, ImageProcessor output, double sigma, double accuracy) {
+        int support = getBlurSupport(sigma, accuracy);
+        GaussianBlur gb = new GaussianBlur();
+        source.resetRoi();
+        output.resetRoi();
+        output.setValue(ImageStatistics.getStatistics(source, Measurements.MIN_MAX, null).min);
+        output.fill();
+        for (Rectangle r : areas) {
+            Rectangle padded = new Rectangle(r);
+            padded.grow(support, support);
+            padded = padded.intersection(frame);
+            source.setRoi(padded);
+            ImageProcessor area = source.crop();
+            gb.blurGaussian(area, sigma, sigma, accuracy);
+            area.setRoi(r.x - padded.x, r.y - padded.y, r.width, r.height);
+            output.insert(area.crop(), r.x, r.y);
+        }
+        source.resetRoi();
+    }
+
+    /**
+     * Marks everything outside the window as occupied, so that no new cells
+     * are initialised there.
+     *
+     * @param allMasks mask of all regions
+     */
+    public void maskOutside(ByteProcessor allMasks) {
+        ImageProcessor inside = allMasks.duplicate();
+        allMasks.setColor(Region.MASK_BACKGROUND);
+        allMasks.fill();
+        for (Rectangle r : areas) {
+            inside.setRoi(r);
+            allMasks.insert(inside.crop(), r.x, r.y);
+        }
+    }
+}
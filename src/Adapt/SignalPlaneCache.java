@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A movie-scoped cache of 8-bit versions of the slices of a stack, shared by
+ * all cells. Every slice is scaled using the same, stack-wide, intensity
+ * range, so values are comparable between frames and cells. The least
+ * recently used slices are discarded once the memory budget is reached.
+ * <p>
+ * Cached planes are shared between threads and must not be modified.
+ */
+public class SignalPlaneCache {
+
+    private final ImageStack stack;
+    private final int capacity;
+    private final LinkedHashMap<Integer, ByteProcessor> planes;
+    private double min, max;
+    private boolean rangeSet = false;
+
+    /**
+     * Creates a cache using one eighth of the maximum heap size.
+     *
+     * @param stack the stack to be converted
+     */
+    public SignalPlaneCache(ImageStack stack) {
+        this(stack, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param stack the stack to be converted
+     * @param maxBytes maximum memory, in bytes, occupied by cached planes - at
+     * least one plane is always retained
+     */
+    public SignalPlaneCache(ImageStack stack, long maxBytes) {
+        this.stack = stack;
+        long planeBytes = (long) stack.getWidth() * stack.getHeight();
+        this.capacity = (int) Math.max(1, Math.min(stack.getSize(), maxBytes / planeBytes));
+        this.planes = new LinkedHashMap<Integer, ByteProcessor>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteProcessor> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the 8-bit version of the specified slice.
+     *
+     * @param slice slice number, from 1 to the stack size
+     * @return a shared, read-only 8-bit plane
+     */
+    public ByteProcessor getPlane(int slice) {
+        synchronized (planes) {
+            ByteProcessor plane = planes.get(slice);
+            if (plane != null) {
+                return plane;
+            }
+        }
+        /*
+         Conversion takes place outside the lock so that other threads are not
+         held up; should two threads convert the same slice, the first result
+         stored is kept.
+         */
+        ByteProcessor plane = convert(stack.getProcessor(slice));
+        synchronized (planes) {
+            ByteProcessor existing = planes.get(slice);
+            if (existing != null) {
+                return existing;
+            }
+            planes.put(slice, plane);
+            return plane;
+        }
+    }
+
+    ByteProcessor convert(ImageProcessor ip) {
+        if (ip instanceof ByteProcessor) {
+            return (ByteProcessor) ip;
+        }
+        double[] range = getRange();
+        int width = ip.getWidth();
+        int n = width * ip.getHeight();
+        /*
+         The range is divided into 256 equal bins, so non-integer data are
+         scaled in the same way as integer data; the maximum maps to 255
+         */
+        double scale = range[1] > range[0] ? 256.0 / (range[1] - range[0]) : 1.0;
+        byte[] pixels = new byte[n];
+        for (int i = 0; i < n; i++) {
+            int v = (int) ((ip.getf(i) - range[0]) * scale);
+            pixels[i] = (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+        }
+        return new ByteProcessor(width, ip.getHeight(), pixels);
+    }
+
+    /**
+     * Returns the stack-wide intensity range used for scaling, which is
+     * determined on first use. 8-bit stacks are not rescaled, so their range
+     * is always 0-255.
+     *
+     * @return the pixel values mapped to 0 and 255
+     */
+    public synchronized double[] getRange() {
+        if (!rangeSet) {
+            double[] range = stack.getBitDepth() == 8 ? new double[]{0.0, 255.0} : findRange(stack);
+            min = range[0];
+            max = range[1];
+            rangeSet = true;
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * Finds the minimum and maximum pixel values in a stack.
+     *
+     * @param stack the stack to be searched
+     * @return minimum and maximum pixel values
+     */
+    public static double[] findRange(ImageStack stack) {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int s = 1; s <= stack.getSize(); s++) {
+            ImageProcessor ip = stack.getProcessor(s);
+            int n = ip.getPixelCount();
+            for (int i = 0; i < n; i++) {
+                float v = ip.getf(i);
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+        }
+        return new double[]{min, max};
+    }
+
+    public ImageStack getStack() {
+        return stack;
+    }
+}
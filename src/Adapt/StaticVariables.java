@@ -141,10 +141,16 @@ public class StaticVariables {
 
     public static final String DISPLAY_PLOTS = "Display Plots";
 
+    public static final String SAVE_BLEB_DATA = "Save Individual Bleb Data";
+
     public static final String MIN_MORPH_AREA = "Minimum Object Size (" + IJ.micronSymbol + "m^2)";
 
     public static final String VIS_LINE_WIDTH = "Visualisation Line Thickness";
 
+    public static final String GREY_LEVELS = "Texture Analysis Grey Levels";
+
+    public static final String VIS_OUTPUT_MODE = "Visualisation Output Format";
+
     public static final String TIME = "Time_(s)";
 
     public static final String ZEROED_TIME = "Zeroed_Time_(s)";
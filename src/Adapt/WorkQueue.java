@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A work queue shared by several workers, possibly in different JVMs on
+ * different machines, through a directory on a shared filesystem. There is
+ * no coordinator: a worker claims an item by atomically creating a lock file
+ * for it, keeps the lock alive by updating its modification time and, once
+ * the item is finished, leaves a done marker. Locks that have not been
+ * updated within the lease period are assumed to belong to workers that have
+ * died and may be reclaimed by others.
+ * <p>
+ * The lease period should comfortably exceed any clock skew between the
+ * machines sharing the directory.
+ */
+public class WorkQueue {
+
+    public static final String LOCK_SUFFIX = ".lock", DONE_SUFFIX = ".done", RECLAIM_SUFFIX = ".reclaim";
+    public static final long DEFAULT_LEASE_MILLIS = 5L * 60L * 1000L;
+    private final Path dir;
+    private final String workerId;
+    private final long leaseMillis;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * Creates a queue with the default lease period and a unique worker ID.
+     *
+     * @param dir shared queue directory, which is created if necessary
+     * @throws IOException if the directory cannot be created
+     */
+    public WorkQueue(File dir) throws IOException {
+        this(dir, ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID(), DEFAULT_LEASE_MILLIS);
+    }
+
+    /**
+     * Creates a queue.
+     *
+     * @param dir shared queue directory, which is created if necessary
+     * @param workerId identifier of this worker, unique among all workers
+     * @param leaseMillis time, in milliseconds, after which a lock that has
+     * not been renewed is considered abandoned
+     * @throws IOException if the directory cannot be created
+     */
+    public WorkQueue(File dir, String workerId, long leaseMillis) throws IOException {
+        this.dir = Files.createDirectories(dir.toPath());
+        this.workerId = workerId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * Attempts to claim an item. The returned lease is renewed in the
+     * background until it is completed or released.
+     *
+     * @param key name of the item, which must be a valid file name
+     * @return the lease, or null if the item is done or is held by another
+     * live worker
+     * @throws IOException if the queue directory cannot be accessed
+     */
+    public Lease claim(String key) throws IOException {
+        if (isDone(key)) {
+            return null;
+        }
+        Path lock = dir.resolve(key + LOCK_SUFFIX);
+        if (!createLock(lock)) {
+            long modified = getLastModified(lock);
+            if (modified < 0L) {
+                /*
+                 The lock was released after the attempt to create it
+                 */
+                if (!createLock(lock)) {
+                    return null;
+                }
+            } else if (isLive(modified) || !reclaim(key, lock)) {
+                return null;
+            }
+        }
+        /*
+         The item may have been finished between the check above and the lock
+         being created
+         */
+        if (isDone(key)) {
+            Files.deleteIfExists(lock);
+            return null;
+        }
+        Lease lease = new Lease(key, lock);
+        leases.add(lease);
+        startHeartbeat();
+        return lease;
+    }
+
+    /**
+     * Checks whether an item has been finished by any worker.
+     *
+     * @param key name of the item
+     * @return true if the item's done marker exists
+     */
+    public boolean isDone(String key) {
+        return Files.exists(dir.resolve(key + DONE_SUFFIX));
+    }
+
+    /**
+     * Checks whether all of the specified items have been finished.
+     *
+     * @param keys names of the items
+     * @return true if every item's done marker exists
+     */
+    public boolean isFinished(Collection<String> keys) {
+        for (String key : keys) {
+            if (!isDone(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keys files by name, so that every worker sharing a queue derives the
+     * same key for the same input.
+     *
+     * @param files input files
+     * @return each file's name mapped to its index in the list
+     * @throws IllegalArgumentException if two files have the same name
+     */
+    public static LinkedHashMap<String, Integer> getKeys(List<File> files) {
+        LinkedHashMap<String, Integer> keys = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            String name = files.get(i).getName();
+            if (keys.putIfAbsent(name, i) != null) {
+                throw new IllegalArgumentException(String.format("Duplicate input movie name: %s", name));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Processes items until every one has been finished by some worker. Items
+     * are claimed in turn and passed to the task; passes are repeated, waiting
+     * for a fraction of the lease period between them, so that items
+     * abandoned by dead workers are picked up once their locks expire. An
+     * item whose task fails is released for other workers to retry, but is not
+     * retried by this one.
+     *
+     * @param keys names of the items
+     * @param task processes one item, returning true on success
+     * @return true if every task run by this worker succeeded
+     * @throws IOException if the queue directory cannot be accessed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean process(List<String> keys, Predicate<String> task) throws IOException, InterruptedException {
+        ArrayList<String> remaining = new ArrayList<>(keys);
+        boolean success = true;
+        while (true) {
+            for (Iterator<String> it = remaining.iterator(); it.hasNext();) {
+                String key = it.next();
+                Lease lease = claim(key);
+                if (lease == null) {
+                    continue;
+                }
+                boolean done = false;
+                try {
+                    done = task.test(key);
+                } finally {
+                    if (done) {
+                        lease.complete();
+                    } else {
+                        lease.release();
+                    }
+                }
+                success &= done;
+                it.remove();
+            }
+            remaining.removeIf(key -> isDone(key));
+            if (remaining.isEmpty()) {
+                return success;
+            }
+            Thread.sleep(Math.max(1L, leaseMillis / 4L));
+        }
+    }
+
+    private boolean createLock(Path lock) throws IOException {
+        try {
+            Files.write(Files.createFile(lock), workerId.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Returns the file's modification time, or -1 if it does not exist.
+     */
+    private long getLastModified(Path file) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (NoSuchFileException e) {
+            return -1L;
+        }
+    }
+
+    private boolean isLive(long modified) {
+        return System.currentTimeMillis() - modified <= leaseMillis;
+    }
+
+    /*
+     * Returns the ID of the worker that created the file, or null if it does
+     * not exist.
+     */
+    private String getOwner(Path file) throws IOException {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Reclaiming is itself guarded by a lock, so that a worker that found the
+     * item's lock stale cannot delete a fresh lock created by another worker
+     * that reclaimed the item first. Staleness is re-checked under the guard.
+     */
+    private boolean reclaim(String key, Path lock) throws IOException {
+        Path guard = dir.resolve(key + RECLAIM_SUFFIX);
+        if (!createLock(guard)) {
+            removeAbandonedGuard(guard);
+            return false;
+        }
+        try {
+            long modified = getLastModified(lock);
+            if (modified >= 0L && isLive(modified)) {
+                return false;
+            }
+            Files.deleteIfExists(lock);
+            return createLock(lock);
+        } finally {
+            Files.deleteIfExists(guard);
+        }
+    }
+
+    /*
+     * Removes a guard left by a worker that died while reclaiming. The guard
+     * is only deleted if it still has the owner and modification time that
+     * were found to be stale, so that a guard since created by another worker
+     * is left alone.
+     */
+    private void removeAbandonedGuard(Path guard) throws IOException {
+        long modified = getLastModified(guard);
+        String owner = getOwner(guard);
+        if (modified < 0L || owner == null || isLive(modified)) {
+            return;
+        }
+        if (modified == getLastModified(guard) && owner.equals(getOwner(guard))) {
+            Files.deleteIfExists(guard);
+        }
+    }
+
+    private synchronized void startHeartbeat() {
+        if (heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "WorkQueue heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1L, leaseMillis / 4L);
+        heartbeat.scheduleAtFixedRate(() -> {
+            for (Lease lease : leases) {
+                lease.renew();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops renewing leases. Any leases still held will eventually be
+     * reclaimed by other workers.
+     */
+    public synchronized void shutdown() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+        leases.clear();
+    }
+
+    /**
+     * A claim on one item of a {@link WorkQueue}.
+     */
+    public class Lease {
+
+        private final String key;
+        private final Path lock;
+        private volatile boolean lost = false;
+
+        Lease(String key, Path lock) {
+            this.key = key;
+            this.lock = lock;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns whether the lease has been lost, because it was not renewed
+         * in time and another worker reclaimed the item.
+         *
+         * @return true if the lock no longer belongs to this worker
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * Renews the lease by updating the lock's modification time, provided
+         * the lock still belongs to this worker.
+         */
+        public void renew() {
+            try {
+                if (isOwner()) {
+                    Files.setLastModifiedTime(lock, FileTime.fromMillis(System.currentTimeMillis()));
+                } else {
+                    lost = true;
+                    leases.remove(this);
+                }
+            } catch (IOException e) {
+                /*
+                 A transient filesystem error; the next renewal will try again
+                 */
+            }
+        }
+
+        /**
+         * Marks the item as done and removes the lock.
+         *
+         * @throws IOException if the done marker cannot be written
+         */
+        public void complete() throws IOException {
+            leases.remove(this);
+            Files.write(dir.resolve(key + DONE_SUFFIX), workerId.getBytes(StandardCharsets.UTF_8));
+            deleteLock();
+        }
+
+        /**
+         * Removes the lock without marking the item as done, so that it can
+         * be claimed again.
+         *
+         * @throws IOException if the lock cannot be removed
+         */
+        public void release() throws IOException {
+            leases.remove(this);
+            deleteLock();
+        }
+
+        private void deleteLock() throws IOException {
+            if (isOwner()) {
+                Files.deleteIfExists(lock);
+            }
+        }
+
+        private boolean isOwner() throws IOException {
+            return workerId.equals(getOwner(lock));
+        }
+    }
+}
@@ -16,11 +16,15 @@
  */
 package Output;
 
+import Adapt.FluorescenceDistAnalyser;
+import Adapt.RunMetrics;
+import Adapt.SignalPlaneCache;
 import Cell.CellData;
 import IO.BioFormats.BioFormatsImg;
 import Process.MultiThreadedProcess;
 import UserVariables.UserVariables;
 import UtilClasses.GenUtils;
+import Visualisation.VisualisationOutputMode;
 import ij.IJ;
 import ij.ImageStack;
 import ij.gui.PointRoi;
@@ -42,6 +46,11 @@ public class MultiThreadedOutputGenerator extends MultiThreadedProcess {
     File directory;
     PointRoi roi;
     private final ArrayList<ArrayList<ArrayList<Double>>> fluorData;
+    private boolean saveBlebDataFiles = true;
+    private VisualisationOutputMode visOutputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private RunMetrics metrics = new RunMetrics();
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
 
     public MultiThreadedOutputGenerator() {
         this(null, null, null, false, null, null, null, null, null, null);
@@ -70,16 +79,26 @@ public class MultiThreadedOutputGenerator extends MultiThreadedProcess {
     @Override
     public void run() {
         IJ.log("Building individual cell outputs...");
-        this.exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.exec = Executors.newFixedThreadPool(nThreads);
         double minLength = protMode ? uv.getBlebLenThresh() : uv.getMinLength();
+        /*
+         8-bit signal planes are converted once per movie and shared by all cells
+         */
+        SignalPlaneCache sigPlanes = sigStack != null ? new SignalPlaneCache(sigStack) : null;
         for (int index = 0; index < cellData.size(); index++) {
             int length = cellData.get(index).getLength();
             fluorData.add(new ArrayList());
             if (length > minLength) {
                 childDir = new File(GenUtils.openResultsDirectory(String.format("%s%s%d", parDir, File.separator, index)));
-                exec.submit(new RunnableOutputGenerator(cellData, parDir,
+                RunnableOutputGenerator generator = new RunnableOutputGenerator(cellData, parDir,
                         protMode, uv, childDir, sigStack,
-                        cytoStack, index, length, directory, roi, fluorData.get(index)));
+                        cytoStack, index, length, directory, roi, fluorData.get(index));
+                generator.setSaveBlebDataFiles(saveBlebDataFiles);
+                generator.setSignalPlaneCache(sigPlanes);
+                generator.setGreyLevels(greyLevels);
+                generator.setVisualisationOutputMode(visOutputMode);
+                generator.setMetrics(metrics);
+                exec.submit(generator);
             }
         }
         terminate("Error generating outputs.");
@@ -90,6 +109,55 @@ public class MultiThreadedOutputGenerator extends MultiThreadedProcess {
         return fluorData;
     }
 
+    /**
+     * Specify whether the data for each individual bleb should be saved to
+     * its own file. Averaged bleb data is always saved.
+     *
+     * @param saveBlebDataFiles true if individual files should be saved
+     */
+    public void setSaveBlebDataFiles(boolean saveBlebDataFiles) {
+        this.saveBlebDataFiles = saveBlebDataFiles;
+    }
+
+    /**
+     * Specify how detection visualisations should be written to disk.
+     *
+     * @param visOutputMode output mode
+     */
+    public void setVisualisationOutputMode(VisualisationOutputMode visOutputMode) {
+        this.visOutputMode = visOutputMode;
+    }
+
+    /**
+     * Specify the metrics to which the timings of each cell's analysis
+     * stages are added.
+     *
+     * @param metrics metrics for the current run
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Specify the number of threads used to generate cell outputs. By default, one
+     * thread is used per available processor.
+     *
+     * @param nThreads number of threads
+     */
+    public void setThreadCount(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Sets the number of grey levels to which signal intensities are
+     * quantised for texture analysis.
+     *
+     * @param greyLevels number of grey levels, between 2 and 256
+     */
+    public void setGreyLevels(int greyLevels) {
+        this.greyLevels = greyLevels;
+    }
+
     public MultiThreadedOutputGenerator duplicate() {
         MultiThreadedOutputGenerator newProcess = new MultiThreadedOutputGenerator();
         this.updateOutputDests(newProcess);
@@ -19,13 +19,19 @@ package Output;
 import Adapt.Analyse_Movie;
 import Adapt.Bleb;
 import Adapt.BlebAnalyser;
+import Adapt.BlebDataAggregator;
 import Adapt.CurveMapAnalyser;
+import Adapt.DistanceTransform;
+import Adapt.FluorescenceDistAnalyser;
+import Adapt.PeriodicComponentLabeller;
+import Adapt.PipelineEvents;
 import Adapt.RegionFluorescenceQuantifier;
+import Adapt.RunMetrics;
+import Adapt.SignalPlaneCache;
 import Adapt.StaticVariables;
 import Cell.CellData;
 import Cell.MorphMap;
 import Curvature.CurveAnalyser;
-import DataProcessing.DataFileAverager;
 import Fluorescence.FluorescenceAnalyser;
 import IAClasses.CrossCorrelation;
 import IAClasses.DSPProcessor;
@@ -37,18 +43,16 @@ import Segmentation.RegionGrower;
 import UserVariables.UserVariables;
 import UtilClasses.GenUtils;
 import UtilClasses.GenVariables;
+import Visualisation.MjpegAviWriter;
+import Visualisation.VisualisationOutputMode;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
-import ij.Prefs;
 import ij.gui.PointRoi;
-import ij.gui.PolygonRoi;
 import ij.gui.Roi;
 import ij.measure.Measurements;
 import ij.plugin.filter.ParticleAnalyzer;
-import ij.plugin.frame.RoiManager;
 import ij.process.Blitter;
-import ij.process.ByteBlitter;
 import ij.process.ByteProcessor;
 import ij.process.ColorBlitter;
 import ij.process.ColorProcessor;
@@ -83,6 +87,12 @@ public class RunnableOutputGenerator extends RunnableProcess {
     File directory;
     PointRoi roi;
     final String BLEB_DATA_FILES = "Bleb_Data_Files";
+    final String BLEB_DATA_AVERAGES = "Bleb_Data_Averages.csv";
+    private boolean saveBlebDataFiles = true;
+    private SignalPlaneCache sigPlanes;
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
+    private VisualisationOutputMode visOutputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private RunMetrics metrics = new RunMetrics();
     private final double trajMin = 5.0;
     DecimalFormat numFormat = StaticVariables.numFormat;
     private final ArrayList<ArrayList<Double>> fluorData;
@@ -108,17 +118,22 @@ public class RunnableOutputGenerator extends RunnableProcess {
         IJ.log(String.format("Building outputs for cell %d", index));
         buildOutput(index, length, false);
         if (uv.isGetFluorDist() && sigStack != null) {
+            long stageStart = System.nanoTime();
             try {
                 IJ.log("Quantifying fluorescence localisation...");
                 FluorescenceAnalyser.generateFluorMapsPerCellOverTime(FluorescenceAnalyser.getFluorDists(StaticVariables.FLUOR_MAP_HEIGHT, sigStack, ImageProcessor.MAX, Integer.MAX_VALUE, uv.getErosion(), cellData.get(index).getCellRegions(), cellData.get(index).getStartFrame(), cellData.get(index).getEndFrame()), childDir);
                 IJ.log("Quantifying gross fluorescence distribution...");
                 RegionFluorescenceQuantifier rfq = new RegionFluorescenceQuantifier(cellData.get(index).getCellRegions(), sigStack, fluorData, index);
+                rfq.setPlaneCache(sigPlanes);
+                rfq.setGreyLevels(greyLevels);
                 rfq.doQuantification();
             } catch (Exception e) {
                 GenUtils.logError(e, "Error during fluorescence distribution quantification.");
             }
+            metrics.record(RunMetrics.Stage.FLUORESCENCE, stageStart);
         }
         if (!protMode && uv.isAnalyseProtrusions()) {
+            long stageStart = System.nanoTime();
             calcSigThresh(cellData.get(index));
             if (uv.isBlebDetect()) {
                 findProtrusionsBasedOnVel(cellData.get(index));
@@ -127,10 +142,6 @@ public class RunnableOutputGenerator extends RunnableProcess {
                 } catch (IOException e) {
                     IJ.log(e.toString());
                 }
-                String normHeadings[] = new String[]{StaticVariables.TOTAL_SIGNAL, StaticVariables.MEAN_SIGNAL};
-                (new DataFileAverager(StaticVariables.DATA_STREAM_HEADINGS,
-                        normHeadings, uv.isDisplayPlots(), StaticVariables.VELOCITY,
-                        StaticVariables.TIME, GenVariables.UTF8)).run(childDir + File.separator + BLEB_DATA_FILES);
             } else {
                 ImageStack protStacks[] = new ImageStack[2];
                 protStacks[0] = findProtrusionsBasedOnMorph(cellData.get(index), (int) Math.round(getMaxFilArea()), 1, sigStack.size());
@@ -143,11 +154,14 @@ public class RunnableOutputGenerator extends RunnableProcess {
                         new File(GenUtils.openResultsDirectory(childDir + File.separator + "Protrusions")), roi);
                 protAM.analyse(null);
             }
+            metrics.record(RunMetrics.Stage.BLEB_ANALYSIS, stageStart);
         }
     }
 
     void buildOutput(int index, int length, boolean preview) {
         IJ.showStatus("Building cell maps");
+        PipelineEvents.Span cellEvent = PipelineEvents.begin(PipelineEvents.Kind.CELL_OUTPUT).setCellIndex(index);
+        long stageStart = System.nanoTime();
         Region[] allRegions = cellData.get(index).getCellRegions();
         double scaleFactors[] = new double[length];
 
@@ -165,6 +179,7 @@ public class RunnableOutputGenerator extends RunnableProcess {
             boundaryPoints.add(new ArrayList());
         }
 
+        metrics.record(RunMetrics.Stage.MAP_BUILDING, stageStart);
         if (!preview) {
             /*
              * To obain a uniform map, all boundary lengths (from each frame) are
@@ -179,9 +194,14 @@ public class RunnableOutputGenerator extends RunnableProcess {
             cellData.get(index).setVelMap(velMap);
             cellData.get(index).setSigMap(sigMap);
             cellData.get(index).setScaleFactors(scaleFactors);
+            stageStart = System.nanoTime();
             buildVelSigMaps(index, allRegions, cellData.get(index), cellData.size(), boundaryPoints);
+            metrics.record(RunMetrics.Stage.MAP_BUILDING, stageStart);
+            stageStart = System.nanoTime();
             double smoothVelocities[][] = velMap.smoothMap(uv.getTempFiltRad() * uv.getTimeRes() / 60.0, uv.getSpatFiltRad() / uv.getSpatialRes()); // Gaussian smoothing in time and space
             double curvatures[][] = curveMap.smoothMap(0.0, 0.0);
+            metrics.record(RunMetrics.Stage.SMOOTHING, stageStart);
+            stageStart = System.nanoTime();
             double sigchanges[][];
             if (sigMap != null) {
                 sigchanges = sigMap.getzVals();
@@ -207,29 +227,48 @@ public class RunnableOutputGenerator extends RunnableProcess {
 //            cellData.get(index).setColorVelMap(colorVelMap);
             cellData.get(index).setSmoothVelocities(smoothVelocities);
             generateMaps(smoothVelocities, cellData.get(index), index, cellData.size());
+            metrics.record(RunMetrics.Stage.MAP_BUILDING, stageStart);
+            stageStart = System.nanoTime();
+            ImagePlus velAutoCorr = CrossCorrelation.periodicity2D(greyVelMap, greyVelMap, 100);
+            metrics.record(RunMetrics.Stage.CORRELATION, stageStart);
+            stageStart = System.nanoTime();
             IJ.saveAs(new ImagePlus("", greyVelMap), "TIF", childDir + File.separator + "VelocityMap.tif");
             IJ.saveAs(new ImagePlus("", greyCurvMap), "TIF", childDir + File.separator + "CurvatureMap.tif");
 //            IJ.saveAs(new ImagePlus("", colorVelMap), "PNG", childDir + File.separator + "ColorVelocityMap.png");
-            IJ.saveAs(CrossCorrelation.periodicity2D(greyVelMap, greyVelMap, 100), "TIF",
-                    childDir + File.separator + "VelMap_AutoCorrelation.tif");
+            IJ.saveAs(velAutoCorr, "TIF", childDir + File.separator + "VelMap_AutoCorrelation.tif");
             try {
                 DataWriter.saveValues(boundaryPoints, new File(String.format("%s%s%s", childDir.getAbsolutePath(), File.separator, "cell_boundary.csv ")),
                         new String[]{"X", "Y", "Frame"}, null, false);
             } catch (IOException e) {
                 GenUtils.logError(e, "Failed to save boundary points file");
             }
+            metrics.record(RunMetrics.Stage.IO, stageStart);
             if (sigStack != null) {
+                stageStart = System.nanoTime();
+                ImagePlus sigCrossCorr = CrossCorrelation.periodicity2D(greySigMap, greyVelMap, 100);
+                ImageProcessor rateOfSigChange = sigMap.calcRateOfChange(greySigMap);
+                ImagePlus sigChangeCrossCorr = CrossCorrelation.periodicity2D(rateOfSigChange, greyVelMap, 100);
+                metrics.record(RunMetrics.Stage.CORRELATION, stageStart);
+                stageStart = System.nanoTime();
                 IJ.saveAs(new ImagePlus("", greySigMap), "TIF", childDir + File.separator
                         + "SignalMap.tif");
-                IJ.saveAs(CrossCorrelation.periodicity2D(greySigMap, greyVelMap, 100), "TIF",
-                        childDir + File.separator + "VelMap_SigMap_CrossCorrelation.tif");
-                ImageProcessor rateOfSigChange = sigMap.calcRateOfChange(greySigMap);
+                IJ.saveAs(sigCrossCorr, "TIF", childDir + File.separator + "VelMap_SigMap_CrossCorrelation.tif");
                 IJ.saveAs(new ImagePlus("", rateOfSigChange), "TIF", childDir + File.separator
                         + "ChangeInSignalMap.tif");
-                IJ.saveAs(CrossCorrelation.periodicity2D(rateOfSigChange, greyVelMap, 100), "TIF",
-                        childDir + File.separator + "VelMap_ChangeInSigMap_CrossCorrelation.tif");
+                IJ.saveAs(sigChangeCrossCorr, "TIF", childDir + File.separator + "VelMap_ChangeInSigMap_CrossCorrelation.tif");
+                metrics.record(RunMetrics.Stage.IO, stageStart);
+            }
+        }
+        if (cellEvent.isEnabled()) {
+            long boundary = 0;
+            for (Region r : allRegions) {
+                if (r != null) {
+                    boundary += r.getBorderPix().size();
+                }
             }
+            cellEvent.setFrameCount(length).setBoundaryLength(boundary);
         }
+        cellEvent.commit();
     }
 
     void calcSigThresh(CellData cellData) {
@@ -250,11 +289,7 @@ public class RunnableOutputGenerator extends RunnableProcess {
         ByteProcessor binmap = (ByteProcessor) (new TypeConverter(cellData.getGreyVelMap(), true)).convertToByte();
         binmap.invert();
         binmap.threshold((int) Math.floor(-binmap.getStatistics().stdDev + binmap.getStatistics().mean));
-        /*
-         * Protrusions are detected using ParticleAnalyzer and added to an
-         * instance of RoiManager.
-         */
-        binmap.invert(); // Analyzer assumes background is black
+        binmap.invert();
         /*
          Lines are drawn such that protrusions in contact with image edges (t=min, t=max)
          are not excluded from analysis.
@@ -262,19 +297,16 @@ public class RunnableOutputGenerator extends RunnableProcess {
         binmap.setColor(0);
         binmap.drawLine(0, 0, 0, binmap.getHeight() - 1);
         binmap.drawLine(binmap.getWidth() - 1, 0, binmap.getWidth() - 1, binmap.getHeight() - 1);
-        Prefs.blackBackground = true;
-        RoiManager manager = new RoiManager(true);
-        ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.ADD_TO_MANAGER
-                + ParticleAnalyzer.EXCLUDE_EDGE_PARTICLES + ParticleAnalyzer.SHOW_MASKS,
-                0, null, 0.0, Double.POSITIVE_INFINITY);
-        RegionGrower.analyzeDetections(manager, binmap, analyzer);
-        ByteProcessor binmapnoedge = (ByteProcessor) analyzer.getOutputImage().getProcessor();
-        ByteProcessor flippedBinMap = new ByteProcessor(binmap.getWidth(), binmap.getHeight());
-        int offset = constructFlippedBinMap(binmap, binmapnoedge, flippedBinMap);
-        RoiManager manager2 = new RoiManager(true);
-        RegionGrower.analyzeDetections(manager2, flippedBinMap, analyzer);
-        copyRoisWithOffset(manager, manager2, offset);
-        cellData.setVelRois(manager.getRoisAsArray());
+        /*
+         * The map is periodic along the cell boundary (y), so protrusions
+         * spanning the top and bottom of the map are labelled as one.
+         */
+        Rectangle[] bounds = PeriodicComponentLabeller.getComponentBounds(binmap, 255);
+        Roi[] velRois = new Roi[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            velRois[i] = new Roi(bounds[i]);
+        }
+        cellData.setVelRois(velRois);
     }
 
     void correlativePlot(CellData cellData) throws IOException, FileNotFoundException {
@@ -282,9 +314,14 @@ public class RunnableOutputGenerator extends RunnableProcess {
         ImageProcessor velMapWithDetections = cellData.getGreyVelMap().duplicate(); // Regions of interest will be drawn on
         cellData.getGreyVelMap().resetRoi();
         cellData.setVelMapWithDetections(velMapWithDetections);
-        File thisMeanData, blebCount;
-        OutputStreamWriter thisDataStream, blebCountStream;
-        File plotDataDir = GenUtils.createDirectory(childDir + File.separator + BLEB_DATA_FILES, false);
+        File blebCount;
+        OutputStreamWriter blebCountStream;
+        File plotDataDir = saveBlebDataFiles
+                ? GenUtils.createDirectory(childDir + File.separator + BLEB_DATA_FILES, false) : null;
+        String valueHeadings[] = Arrays.copyOfRange(StaticVariables.DATA_STREAM_HEADINGS, 1,
+                StaticVariables.DATA_STREAM_HEADINGS.length);
+        String normHeadings[] = new String[]{StaticVariables.TOTAL_SIGNAL, StaticVariables.MEAN_SIGNAL};
+        BlebDataAggregator aggregator = new BlebDataAggregator(valueHeadings, normHeadings, 60.0 / uv.getTimeRes());
         File detectDir = GenUtils.createDirectory(childDir + File.separator + "Detection_Visualisation", false);
         File mapDir = GenUtils.createDirectory(childDir + File.separator + "Bleb_Signal_Maps", false);
         ImageStack detectionStack = new ImageStack(cytoStack.getWidth(),
@@ -292,7 +329,9 @@ public class RunnableOutputGenerator extends RunnableProcess {
         for (int s = 0; s < cytoStack.getSize(); s++) {
             ColorProcessor detectionSlice = new ColorProcessor(detectionStack.getWidth(), detectionStack.getHeight());
             detectionSlice.setChannel(1, (ByteProcessor) ((new TypeConverter(cytoStack.getProcessor(s + 1), true)).convertToByte()));
-            if (sigStack != null) {
+            if (sigPlanes != null) {
+                detectionSlice.setChannel(2, sigPlanes.getPlane(s + 1));
+            } else if (sigStack != null) {
                 detectionSlice.setChannel(2, (ByteProcessor) ((new TypeConverter(sigStack.getProcessor(s + 1), true)).convertToByte()));
             }
             detectionStack.addSlice(detectionSlice);
@@ -335,38 +374,25 @@ public class RunnableOutputGenerator extends RunnableProcess {
                         GenUtils.drawRegionWithLabel(velMapWithDetections, cellData.getVelRois()[i],
                                 "" + count, cellData.getVelRois()[i].getBounds(), Color.white, 3,
                                 new Font("Helvetica", Font.PLAIN, 20), false);
-                        /*
-                         * Open files to save data for current protrusion
-                         */
-                        thisMeanData = new File(plotDataDir + File.separator + "bleb_data_" + count + ".csv");
-                        thisDataStream = new OutputStreamWriter(new FileOutputStream(thisMeanData), GenVariables.UTF8);
-                        thisDataStream.write(directory.getAbsolutePath() + "_" + count + "\n");
-                        for (int d = 0; d < StaticVariables.DATA_STREAM_HEADINGS.length; d++) {
-                            thisDataStream.write(StaticVariables.DATA_STREAM_HEADINGS[d] + ",");
-                        }
-                        thisDataStream.write("\n");
                         IJ.saveAs(new ImagePlus("", BlebAnalyser.drawBlebSigMap(currentBleb,
                                 uv.getSpatialRes(), uv.isUseSigThresh())),
                                 "TIF", mapDir + File.separator + "detection_" + numFormat.format(count) + "_map.tif");
-                        for (int z = 0; z < meanVel.size(); z++) {
-                            meanVel.set(z, meanVel.get(z) / protrusionLength.get(z)); //Divide by protrusion length to get mean
+                        int duration = meanVel.size();
+                        double series[][] = new double[valueHeadings.length][duration];
+                        for (int z = 0; z < duration; z++) {
+                            double currentLength = protrusionLength.get(z);
+                            series[0][z] = meanVel.get(z) / currentLength; //Divide by protrusion length to get mean
+                            series[1][z] = sumSig.get(z);
+                            series[2][z] = sumSig.get(z) / currentLength;
+                            series[3][z] = currentLength;
+                            series[4][z] = currentLength / protrusionLength.get(0);
+                            blebFrameCount[z + bounds.x]++;
                         }
-                        double time0 = bounds.x * 60.0 / uv.getTimeRes();
-                        for (int z = 0; z < meanVel.size(); z++) {
-                            int t = z + bounds.x;
-                            double time = t * 60.0 / uv.getTimeRes();
-                            double currentMeanSig;
-                            currentMeanSig = sumSig.get(z) / protrusionLength.get(z);
-                            thisDataStream.write(String.valueOf(time - time0) + ", "
-                                    + String.valueOf(meanVel.get(z)) + ", "
-                                    + String.valueOf(sumSig.get(z)) + ", "
-                                    + String.valueOf(currentMeanSig) + ", "
-                                    + String.valueOf(protrusionLength.get(z)) + ", "
-                                    + String.valueOf(protrusionLength.get(z) / protrusionLength.get(0)));
-                            thisDataStream.write("\n");
-                            blebFrameCount[t]++;
+                        aggregator.addBleb(series, duration);
+                        if (saveBlebDataFiles) {
+                            saveBlebData(new File(plotDataDir + File.separator + "bleb_data_" + count + ".csv"),
+                                    count, series, duration);
                         }
-                        thisDataStream.close();
                         count++;
                     }
                     IJ.freeMemory();
@@ -377,11 +403,103 @@ public class RunnableOutputGenerator extends RunnableProcess {
             blebCountStream.write(b + "," + blebFrameCount[b] + "\n");
         }
         blebCountStream.close();
-        Utils.saveStackAsSeries(detectionStack, detectDir + File.separator, "JPEG", numFormat);
+        if (aggregator.getBlebCount() > 0) {
+            aggregator.save(new File(childDir + File.separator + BLEB_DATA_AVERAGES));
+            if (uv.isDisplayPlots()) {
+                aggregator.getPlot(StaticVariables.VELOCITY).show();
+            }
+        }
+        if (visOutputMode == VisualisationOutputMode.MOVIE) {
+            saveDetectionMovie(detectionStack, new File(detectDir.getAbsolutePath() + ".avi"));
+        } else {
+            Utils.saveStackAsSeries(detectionStack, detectDir + File.separator, "JPEG", numFormat);
+        }
 
         IJ.saveAs(new ImagePlus("", velMapWithDetections), "PNG", childDir + File.separator + "Velocity_Map_with_Detected_Regions.png");
     }
 
+    void saveBlebData(File file, int count, double[][] series, int duration) throws IOException {
+        try (OutputStreamWriter stream = new OutputStreamWriter(new FileOutputStream(file), GenVariables.UTF8)) {
+            stream.write(directory.getAbsolutePath() + "_" + count + "\n");
+            for (int d = 0; d < StaticVariables.DATA_STREAM_HEADINGS.length; d++) {
+                stream.write(StaticVariables.DATA_STREAM_HEADINGS[d] + ",");
+            }
+            stream.write("\n");
+            double timeStep = 60.0 / uv.getTimeRes();
+            for (int z = 0; z < duration; z++) {
+                stream.write(String.valueOf(z * timeStep));
+                for (double[] s : series) {
+                    stream.write(", " + String.valueOf(s[z]));
+                }
+                stream.write("\n");
+            }
+        }
+    }
+
+    /**
+     * Specify whether the data for each individual bleb should be saved to
+     * its own file, in addition to the averaged data.
+     *
+     * @param saveBlebDataFiles true if individual files should be saved
+     */
+    public void setSaveBlebDataFiles(boolean saveBlebDataFiles) {
+        this.saveBlebDataFiles = saveBlebDataFiles;
+    }
+
+    /*
+     * Detections are drawn bleb by bleb across the whole stack, so frames can
+     * only be encoded once every bleb has been drawn.
+     */
+    void saveDetectionMovie(ImageStack detectionStack, File file) {
+        try (MjpegAviWriter movie = new MjpegAviWriter(file, detectionStack.getWidth(), detectionStack.getHeight())) {
+            for (int s = 1; s <= detectionStack.getSize(); s++) {
+                movie.writeFrame(detectionStack.getProcessor(s).getBufferedImage());
+            }
+        } catch (IOException e) {
+            GenUtils.logError(e, "Failed to save detection movie.");
+        }
+    }
+
+    /**
+     * Specify the metrics to which the timings of this cell's analysis stages
+     * are added.
+     *
+     * @param metrics metrics for the current run
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Specify how the detection visualisation should be written to disk.
+     *
+     * @param visOutputMode output mode - only
+     * {@link VisualisationOutputMode#MOVIE} changes the default of one image
+     * per frame
+     */
+    public void setVisualisationOutputMode(VisualisationOutputMode visOutputMode) {
+        this.visOutputMode = visOutputMode;
+    }
+
+    /**
+     * Specify a cache of 8-bit signal planes shared by all cells in the movie.
+     *
+     * @param sigPlanes cache of 8-bit versions of sigStack
+     */
+    public void setSignalPlaneCache(SignalPlaneCache sigPlanes) {
+        this.sigPlanes = sigPlanes;
+    }
+
+    /**
+     * Sets the number of grey levels to which signal intensities are
+     * quantised for texture analysis.
+     *
+     * @param greyLevels number of grey levels, between 2 and 256
+     */
+    public void setGreyLevels(int greyLevels) {
+        this.greyLevels = greyLevels;
+    }
+
     double getMaxFilArea() {
         return Math.sqrt(uv.getFiloSizeMax() / (Math.pow(uv.getSpatialRes(), 2.0)));
     }
@@ -390,27 +508,23 @@ public class RunnableOutputGenerator extends RunnableProcess {
         Region regions[] = cellData.getCellRegions();
         ImageStack cyto2 = new ImageStack(cytoStack.getWidth(), cytoStack.getHeight());
         for (int f = start - 1; f < cytoStack.getSize() && f <= stop - 1; f++) {
-            ImageProcessor mask = new ByteProcessor(cytoStack.getWidth(), cytoStack.getHeight());
-            mask.setColor(Region.MASK_BACKGROUND);
-            mask.fill();
+            ImageProcessor mask;
             if (regions[f] != null) {
-                mask = regions[f].getMask();
-                ImageProcessor mask2 = mask.duplicate();
-                for (int j = 0; j < reps; j++) {
-                    mask2.erode();
-                }
-                for (int j = 0; j < reps; j++) {
-                    mask2.dilate();
-                }
+                /*
+                 Opening is performed using distance transforms within the
+                 bounding box of the region, so cost is independent of reps.
+                 */
+                mask = DistanceTransform.getProtrusions(regions[f].getMask(), regions[f].getBounds(),
+                        reps, Region.MASK_FOREGROUND, Region.MASK_BACKGROUND);
+            } else {
+                mask = new ByteProcessor(cytoStack.getWidth(), cytoStack.getHeight());
+                mask.setColor(Region.MASK_BACKGROUND);
+                mask.fill();
                 mask.invert();
-                ByteBlitter bb = new ByteBlitter((ByteProcessor) mask);
-                mask2.invert();
-                bb.copyBits(mask2, 0, 0, Blitter.SUBTRACT);
             }
             double minArea = RegionGrower.getMinFilArea(uv);
             ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.EXCLUDE_EDGE_PARTICLES + ParticleAnalyzer.SHOW_MASKS,
                     0, null, minArea, Double.POSITIVE_INFINITY);
-            mask.invert();
             RegionGrower.analyzeDetections(null, mask, analyzer);
             ImageProcessor analyzerMask = analyzer.getOutputImage().getProcessor();
             analyzerMask.invertLut();
@@ -601,39 +715,6 @@ public class RunnableOutputGenerator extends RunnableProcess {
         }
     }
 
-    int constructFlippedBinMap(ByteProcessor input1, ByteProcessor input2, ByteProcessor output) {
-        ByteBlitter blitter1 = new ByteBlitter(input1);
-        blitter1.copyBits(input2, 0, 0, Blitter.SUBTRACT);
-        ByteBlitter flipBlitter = new ByteBlitter(output);
-        Rectangle topROI = new Rectangle(0, 0, input1.getWidth(), input1.getHeight() / 2);
-        Rectangle bottomROI;
-        if (input1.getHeight() % 2 == 0) {
-            bottomROI = new Rectangle(0, input1.getHeight() / 2, input1.getWidth(), input1.getHeight() / 2);
-        } else {
-            bottomROI = new Rectangle(0, input1.getHeight() / 2, input1.getWidth(), input1.getHeight() / 2 + 1);
-        }
-        input1.setRoi(topROI);
-        flipBlitter.copyBits(input1.crop(), 0, bottomROI.height, Blitter.COPY);
-        input1.setRoi(bottomROI);
-        flipBlitter.copyBits(input1.crop(), 0, 0, Blitter.COPY);
-        return bottomROI.y;
-    }
-
-    void copyRoisWithOffset(RoiManager manager, RoiManager manager2, int offset) {
-        Roi preAdjusted[] = manager2.getRoisAsArray();
-        for (Roi r : preAdjusted) {
-            Polygon poly = ((PolygonRoi) r).getPolygon();
-            int n = poly.npoints;
-            int xp[] = new int[n];
-            int yp[] = new int[n];
-            for (int i = 0; i < n; i++) {
-                xp[i] = poly.xpoints[i];
-                yp[i] = poly.ypoints[i] + offset;
-            }
-            manager.addRoi(new PolygonRoi(xp, yp, n, Roi.POLYGON));
-        }
-    }
-
     void generateDetectionStack(Bleb currentBleb, int index) {
         int cortexRad = (int) Math.round(uv.getCortexDepth() / uv.getSpatialRes());
         Rectangle bounds = currentBleb.getBounds();
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import ij.process.FloatProcessor;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of blank full-frame images, shared by visualisation threads so that
+ * dense frames are not reallocated for every frame rendered. Images must be
+ * returned blank, which {@link SparseFrame#clear(FloatProcessor)} achieves by
+ * resetting only the pixels that were drawn.
+ */
+public class FloatFramePool {
+
+    private final int width, height;
+    private final ConcurrentLinkedQueue<FloatProcessor> pool = new ConcurrentLinkedQueue<>();
+
+    public FloatFramePool(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Takes a blank image from the pool, or creates one if none is free.
+     *
+     * @return an image in which all pixels are zero
+     */
+    public FloatProcessor acquire() {
+        FloatProcessor ip = pool.poll();
+        return ip != null ? ip : new FloatProcessor(width, height);
+    }
+
+    /**
+     * Returns an image to the pool.
+     *
+     * @param ip an image of the pool's dimensions, in which all pixels are
+     * zero
+     */
+    public void release(FloatProcessor ip) {
+        if (ip.getWidth() == width && ip.getHeight() == height) {
+            pool.offer(ip);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Streams frames into a Motion-JPEG AVI file, in the same layout as ImageJ's
+ * AVI writer. Each frame is JPEG-compressed and appended as soon as it is
+ * written, so no stack of frames is held in memory. Frames may be written
+ * from several threads and out of order; compression takes place in the
+ * calling thread and out-of-order frames are held, compressed, until they
+ * can be appended in sequence.
+ */
+public class MjpegAviWriter implements Closeable {
+
+    public static final double DEFAULT_FRAME_RATE = 10.0;
+    public static final float DEFAULT_QUALITY = 0.85f;
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIIF_KEYFRAME = 0x10;
+    private final RandomAccessFile raf;
+    private final int width, height;
+    private final float quality;
+    private final HashMap<Integer, byte[]> pending = new HashMap<>();
+    private int nextFrame = 0;
+    private int nFrames = 0;
+    private int maxChunkSize = 0;
+    private int[] chunkOffsets = new int[256];
+    private int[] chunkSizes = new int[256];
+    private long riffSizePos, totalFramesPos, suggestedBufferPos, lengthPos, streamBufferPos, moviSizePos, moviStart;
+
+    public MjpegAviWriter(File file, int width, int height) throws IOException {
+        this(file, width, height, DEFAULT_FRAME_RATE, DEFAULT_QUALITY);
+    }
+
+    /**
+     * Creates a new AVI file and writes its headers.
+     *
+     * @param file the file to be written - any existing file is replaced
+     * @param width frame width
+     * @param height frame height
+     * @param frameRate playback rate, in frames per second
+     * @param quality JPEG quality, between 0 and 1
+     * @throws IOException if the file cannot be written
+     */
+    public MjpegAviWriter(File file, int width, int height, double frameRate, float quality) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.quality = quality;
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Cannot replace %s", file.getAbsolutePath()));
+        }
+        this.raf = new RandomAccessFile(file, "rw");
+        writeHeaders(frameRate);
+    }
+
+    private void writeHeaders(double frameRate) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(224).order(ByteOrder.LITTLE_ENDIAN);
+        putFourCC(b, "RIFF");
+        riffSizePos = b.position();
+        b.putInt(0);
+        putFourCC(b, "AVI ");
+        putFourCC(b, "LIST");
+        b.putInt(192);
+        putFourCC(b, "hdrl");
+        putFourCC(b, "avih");
+        b.putInt(56);
+        b.putInt((int) Math.round(1.0e6 / frameRate));
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(AVIF_HASINDEX);
+        totalFramesPos = b.position();
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(1);
+        suggestedBufferPos = b.position();
+        b.putInt(0);
+        b.putInt(width);
+        b.putInt(height);
+        b.putInt(0).putInt(0).putInt(0).putInt(0);
+        putFourCC(b, "LIST");
+        b.putInt(116);
+        putFourCC(b, "strl");
+        putFourCC(b, "strh");
+        b.putInt(56);
+        putFourCC(b, "vids");
+        putFourCC(b, "MJPG");
+        b.putInt(0);
+        b.putShort((short) 0).putShort((short) 0);
+        b.putInt(0);
+        b.putInt(1000);
+        b.putInt((int) Math.round(frameRate * 1000.0));
+        b.putInt(0);
+        lengthPos = b.position();
+        b.putInt(0);
+        streamBufferPos = b.position();
+        b.putInt(0);
+        b.putInt(-1);
+        b.putInt(0);
+        b.putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+        putFourCC(b, "strf");
+        b.putInt(40);
+        b.putInt(40);
+        b.putInt(width);
+        b.putInt(height);
+        b.putShort((short) 1);
+        b.putShort((short) 24);
+        putFourCC(b, "MJPG");
+        b.putInt(width * height * 3);
+        b.putInt(0).putInt(0).putInt(0).putInt(0);
+        putFourCC(b, "LIST");
+        moviSizePos = b.position();
+        b.putInt(0);
+        moviStart = b.position();
+        putFourCC(b, "movi");
+        raf.write(b.array(), 0, b.position());
+    }
+
+    private static void putFourCC(ByteBuffer b, String fourCC) {
+        for (int i = 0; i < 4; i++) {
+            b.put((byte) fourCC.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a frame to the end of the movie.
+     *
+     * @param image the frame, which must be the movie's dimensions
+     * @throws IOException if the frame cannot be encoded or written
+     */
+    public void writeFrame(BufferedImage image) throws IOException {
+        byte[] jpeg = encode(image);
+        synchronized (this) {
+            writeFrame(nextFrame, jpeg);
+        }
+    }
+
+    /**
+     * Writes the frame with the specified index. Frames may be written in
+     * any order; each is appended once all frames before it have been
+     * written.
+     *
+     * @param index frame index, starting at zero
+     * @param image the frame, which must be the movie's dimensions
+     * @throws IOException if the frame cannot be encoded or written
+     */
+    public void writeFrame(int index, BufferedImage image) throws IOException {
+        byte[] jpeg = encode(image);
+        synchronized (this) {
+            writeFrame(index, jpeg);
+        }
+    }
+
+    private void writeFrame(int index, byte[] jpeg) throws IOException {
+        if (index < nextFrame || pending.containsKey(index)) {
+            throw new IllegalArgumentException(String.format("Frame %d has already been written", index));
+        }
+        pending.put(index, jpeg);
+        byte[] next;
+        while ((next = pending.remove(nextFrame)) != null) {
+            appendChunk(next);
+            nextFrame++;
+        }
+    }
+
+    byte[] encode(BufferedImage image) throws IOException {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException(String.format("Frame is %d x %d, expected %d x %d",
+                    image.getWidth(), image.getHeight(), width, height));
+        }
+        if (image.getType() != BufferedImage.TYPE_INT_RGB && image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            rgb.getGraphics().drawImage(image, 0, 0, null);
+            image = rgb;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void appendChunk(byte[] jpeg) throws IOException {
+        int size = jpeg.length;
+        long pos = raf.length();
+        raf.seek(pos);
+        ByteBuffer b = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        putFourCC(b, "00dc");
+        b.putInt(size);
+        raf.write(b.array());
+        raf.write(jpeg);
+        if (size % 2 != 0) {
+            raf.write(0);
+        }
+        if (nFrames >= chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, nFrames * 2);
+            chunkSizes = Arrays.copyOf(chunkSizes, nFrames * 2);
+        }
+        chunkOffsets[nFrames] = (int) (pos - moviStart);
+        chunkSizes[nFrames] = size;
+        maxChunkSize = Math.max(maxChunkSize, size);
+        nFrames++;
+    }
+
+    public synchronized int getFrameCount() {
+        return nFrames;
+    }
+
+    /**
+     * Appends any frames still waiting for earlier frames, in index order,
+     * then writes the index and completes the headers.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            Integer[] remaining = pending.keySet().toArray(new Integer[pending.size()]);
+            Arrays.sort(remaining);
+            for (Integer i : remaining) {
+                appendChunk(pending.remove(i));
+            }
+            long moviEnd = raf.length();
+            ByteBuffer b = ByteBuffer.allocate(8 + 16 * nFrames).order(ByteOrder.LITTLE_ENDIAN);
+            putFourCC(b, "idx1");
+            b.putInt(16 * nFrames);
+            for (int i = 0; i < nFrames; i++) {
+                putFourCC(b, "00dc");
+                b.putInt(AVIIF_KEYFRAME);
+                b.putInt(chunkOffsets[i]);
+                b.putInt(chunkSizes[i]);
+            }
+            raf.seek(moviEnd);
+            raf.write(b.array());
+            patchInt(riffSizePos, (int) (raf.length() - 8));
+            patchInt(moviSizePos, (int) (moviEnd - moviStart));
+            patchInt(totalFramesPos, nFrames);
+            patchInt(lengthPos, nFrames);
+            patchInt(suggestedBufferPos, maxChunkSize + 8);
+            patchInt(streamBufferPos, maxChunkSize + 8);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void patchInt(long pos, int value) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(value);
+        raf.seek(pos);
+        raf.write(b.array());
+    }
+}
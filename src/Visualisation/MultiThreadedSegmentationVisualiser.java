@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import Adapt.StaticVariables;
+import Cell.CellData;
+import IO.BioFormats.BioFormatsImg;
+import Process.MultiThreadedProcess;
+import UserVariables.UserVariables;
+import UtilClasses.GenUtils;
+import ij.IJ;
+import ij.ImageStack;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the segmentation visualisation of every frame in parallel, with
+ * PNG encoding carried out by a separate pool of threads. The encoding queue
+ * is bounded, so that rendering cannot run far ahead of encoding; when the
+ * queue is full, rendering threads encode frames themselves. In
+ * {@link VisualisationOutputMode#MOVIE} mode, frames are compressed into a
+ * single AVI file instead of being saved individually.
+ */
+public class MultiThreadedSegmentationVisualiser extends MultiThreadedProcess {
+
+    ArrayList<CellData> cellData;
+    boolean protMode;
+    ImageStack cytoStack;
+    UserVariables uv;
+    File segDir;
+    protected DecimalFormat numFormat = StaticVariables.numFormat;
+    private VisualisationOutputMode outputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+
+    public MultiThreadedSegmentationVisualiser() {
+        this(null, null, false, null, null, null);
+    }
+
+    public void setup(BioFormatsImg img, Properties props, String[] propLabels) {
+
+    }
+
+    public MultiThreadedSegmentationVisualiser(ExecutorService exec, ArrayList<CellData> cellData, boolean protMode, ImageStack cytoStack, UserVariables uv, File segDir) {
+        super(null);
+        this.cellData = cellData;
+        this.protMode = protMode;
+        this.cytoStack = cytoStack;
+        this.uv = uv;
+        this.segDir = segDir;
+    }
+
+    @Override
+    public void run() {
+        IJ.log("Building segmentation visualisations...");
+        this.exec = Executors.newFixedThreadPool(nThreads);
+        int nEncoders = Math.max(1, nThreads / 2);
+        ThreadPoolExecutor encoder = new ThreadPoolExecutor(nEncoders, nEncoders, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * nThreads), new ThreadPoolExecutor.CallerRunsPolicy());
+        double minLength = protMode ? uv.getBlebLenThresh() : uv.getMinLength();
+        int stackSize = cytoStack.getSize();
+        MjpegAviWriter movie = null;
+        if (outputMode == VisualisationOutputMode.MOVIE) {
+            try {
+                movie = new MjpegAviWriter(new File(segDir.getAbsolutePath() + ".avi"), cytoStack.getWidth(), cytoStack.getHeight());
+            } catch (IOException e) {
+                GenUtils.logError(e, "Failed to create segmentation movie.");
+                return;
+            }
+        }
+        for (int t = 0; t < stackSize; t++) {
+            RunnableSegmentationVisualiser visualiser = new RunnableSegmentationVisualiser(cellData, minLength, cytoStack.getWidth(),
+                    cytoStack.getHeight(), stackSize, uv, segDir, numFormat, t, encoder);
+            visualiser.setMovie(movie);
+            exec.submit(visualiser);
+        }
+        terminate("Error generating segmentation visualisations.");
+        encoder.shutdown();
+        try {
+            encoder.awaitTermination(1, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            GenUtils.logError(e, "Interrupted while saving segmentation visualisations.");
+            Thread.currentThread().interrupt();
+        }
+        if (movie != null) {
+            try {
+                movie.close();
+            } catch (IOException e) {
+                GenUtils.logError(e, "Failed to save segmentation movie.");
+            }
+        }
+    }
+
+    /**
+     * Specify how visualisations should be written to disk. By default, one
+     * PNG image is saved per frame.
+     *
+     * @param outputMode output mode
+     */
+    public void setOutputMode(VisualisationOutputMode outputMode) {
+        this.outputMode = outputMode;
+    }
+
+    /**
+     * Specify the number of threads used to generate visualisations. By default, one
+     * thread is used per available processor.
+     *
+     * @param nThreads number of threads
+     */
+    public void setThreadCount(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    public MultiThreadedSegmentationVisualiser duplicate() {
+        MultiThreadedSegmentationVisualiser newProcess = new MultiThreadedSegmentationVisualiser();
+        this.updateOutputDests(newProcess);
+        return newProcess;
+    }
+}
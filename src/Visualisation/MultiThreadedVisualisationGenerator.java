@@ -20,21 +20,21 @@ import Adapt.StaticVariables;
 import Cell.CellData;
 import IO.BioFormats.BioFormatsImg;
 import Lut.LUTCreator;
-import Overlay.OverlayToRoi;
 import Process.MultiThreadedProcess;
 import UserVariables.UserVariables;
+import UtilClasses.GenUtils;
 import ij.IJ;
-import ij.ImagePlus;
 import ij.ImageStack;
-import ij.gui.Overlay;
-import ij.plugin.frame.RoiManager;
+import ij.gui.Roi;
 import java.awt.image.IndexColorModel;
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MultiThreadedVisualisationGenerator extends MultiThreadedProcess {
 
@@ -45,7 +45,9 @@ public class MultiThreadedVisualisationGenerator extends MultiThreadedProcess {
     File velDirName;
     File curvDirName;
     protected DecimalFormat numFormat = StaticVariables.numFormat;
-    private final Overlay labels;
+    private AtomicReferenceArray<ArrayList<Roi>> labels;
+    private VisualisationOutputMode outputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private int nThreads = Runtime.getRuntime().availableProcessors();
 
     public MultiThreadedVisualisationGenerator() {
         this(null, null, false, null, null, null, null);
@@ -63,30 +65,113 @@ public class MultiThreadedVisualisationGenerator extends MultiThreadedProcess {
         this.uv = uv;
         this.velDirName = velDirName;
         this.curvDirName = curvDirName;
-        this.labels = new Overlay();
     }
 
     @Override
     public void run() {
         IJ.log("Building visualisations...");
-        this.exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.exec = Executors.newFixedThreadPool(nThreads);
         int stackSize = cytoStack.getSize();
         IndexColorModel lut = (new LUTCreator()).getRedGreen();
+        labels = new AtomicReferenceArray<>(stackSize);
+        FloatFramePool framePool = new FloatFramePool(cytoStack.getWidth(), cytoStack.getHeight());
+        MjpegAviWriter velMovie = null, curveMovie = null;
+        double velRange = 0.0, curveRange = 0.0;
+        if (outputMode == VisualisationOutputMode.MOVIE) {
+            try {
+                velMovie = new MjpegAviWriter(new File(velDirName.getAbsolutePath() + ".avi"), cytoStack.getWidth(), cytoStack.getHeight());
+                curveMovie = new MjpegAviWriter(new File(curvDirName.getAbsolutePath() + ".avi"), cytoStack.getWidth(), cytoStack.getHeight());
+            } catch (IOException e) {
+                GenUtils.logError(e, "Failed to create visualisation movies.");
+                closeMovies(velMovie, curveMovie);
+                return;
+            }
+            double minLength = protMode ? uv.getBlebLenThresh() : uv.getMinLength();
+            for (CellData cell : cellData) {
+                if (cell.getLength() > minLength) {
+                    velRange = Math.max(velRange, getMaxMagnitude(cell.getSmoothVelocities()));
+                    curveRange = Math.max(curveRange, getMaxMagnitude(cell.getCurveMap().getzVals()));
+                }
+            }
+        }
         for (int t = 0; t < stackSize; t++) {
-            exec.submit(new RunnableVisualisationGenerator(cellData, protMode, cytoStack, uv, velDirName, curvDirName, numFormat, t, labels, lut));
+            RunnableVisualisationGenerator generator = new RunnableVisualisationGenerator(cellData, protMode, cytoStack, uv, velDirName, curvDirName, numFormat, t, labels, lut);
+            generator.setOutputMode(outputMode);
+            generator.setFramePool(framePool);
+            generator.setMovieWriters(velMovie, curveMovie, velRange, curveRange);
+            exec.submit(generator);
         }
         terminate("Error generating visualisations.");
+        closeMovies(velMovie, curveMovie);
         saveOverlays();
     }
 
+    void closeMovies(MjpegAviWriter... movies) {
+        for (MjpegAviWriter movie : movies) {
+            if (movie == null) {
+                continue;
+            }
+            try {
+                movie.close();
+            } catch (IOException e) {
+                GenUtils.logError(e, "Failed to save visualisation movie.");
+            }
+        }
+    }
+
+    static double getMaxMagnitude(double[][] values) {
+        double max = 0.0;
+        if (values == null) {
+            return max;
+        }
+        for (double[] row : values) {
+            for (double v : row) {
+                if (Math.abs(v) > max) {
+                    max = Math.abs(v);
+                }
+            }
+        }
+        return max;
+    }
+
+    /*
+     * Per-frame label lists are written, in frame order, straight to a ROI zip
+     * file.
+     */
     void saveOverlays() {
-        ImagePlus c1Imp = new ImagePlus("", cytoStack);
-        c1Imp.setOverlay(labels);
-        OverlayToRoi.toRoi(c1Imp);
-        RoiManager rm = RoiManager.getInstance2();
-        rm.runCommand("Save", String.format("%s%slabels.zip", velDirName.getParent(), File.separator));
-        rm.reset();
-        rm.close();
+        File file = new File(String.format("%s%slabels.zip", velDirName.getParent(), File.separator));
+        try (RoiZipWriter writer = new RoiZipWriter(file)) {
+            for (int t = 0; t < labels.length(); t++) {
+                ArrayList<Roi> frameLabels = labels.get(t);
+                if (frameLabels != null) {
+                    for (Roi label : frameLabels) {
+                        writer.add(label);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            GenUtils.logError(e, "Failed to save visualisation labels.");
+        }
+    }
+
+    /**
+     * Specify how visualisations should be written to disk. By default, one
+     * image is saved per frame.
+     *
+     * @param outputMode output mode
+     */
+    public void setOutputMode(VisualisationOutputMode outputMode) {
+        this.outputMode = outputMode;
+    }
+
+    /**
+     * Specify the number of threads used to generate visualisations. By default, one
+     * thread is used per available processor.
+     *
+     * @param nThreads number of threads
+     */
+    public void setThreadCount(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
     }
 
     public MultiThreadedVisualisationGenerator duplicate() {
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import ij.gui.Roi;
+import ij.io.RoiEncoder;
+import java.awt.Rectangle;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams ROIs into a zip file in the format written by ImageJ's ROI Manager,
+ * without requiring a ROI Manager or a GUI. Each ROI is encoded as soon as it
+ * is added and is not retained; only its entry name is kept, so that names
+ * can be made unique.
+ */
+public class RoiZipWriter implements Closeable {
+
+    private final ZipOutputStream zos;
+    private final DataOutputStream out;
+    private final RoiEncoder encoder;
+    private final HashSet<String> names = new HashSet<>();
+
+    /**
+     * Creates a new writer.
+     *
+     * @param file the zip file to be written
+     * @throws IOException if the file cannot be created
+     */
+    public RoiZipWriter(File file) throws IOException {
+        this.zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.out = new DataOutputStream(zos);
+        this.encoder = new RoiEncoder(out);
+    }
+
+    /**
+     * Encodes a ROI and adds it to the zip file. The entry is named after the
+     * ROI or, if it has no name, in the same way as the ROI Manager names ROIs
+     * (slice-y-x), with a suffix added where necessary to keep entry names
+     * unique. The ROI itself is not modified.
+     *
+     * @param roi the ROI to be added
+     * @throws IOException if the ROI cannot be written
+     */
+    public void add(Roi roi) throws IOException {
+        String name = roi.getName();
+        if (name == null) {
+            name = getLabel(roi);
+        }
+        String unique = name;
+        for (int i = 1; !names.add(unique); i++) {
+            unique = String.format("%s-%d", name, i);
+        }
+        zos.putNextEntry(new ZipEntry(unique + ".roi"));
+        encoder.write(roi);
+        out.flush();
+        zos.closeEntry();
+    }
+
+    static String getLabel(Roi roi) {
+        Rectangle r = roi.getBounds();
+        return String.format("%04d-%04d-%04d", roi.getPosition(), r.y + r.height / 2, r.x + r.width / 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import Cell.CellData;
+import IAClasses.Region;
+import Process.RunnableProcess;
+import UserVariables.UserVariables;
+import UtilClasses.GenUtils;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import ij.process.ColorProcessor;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+public class RunnableSegmentationVisualiser extends RunnableProcess {
+
+    private final ArrayList<CellData> cellData;
+    private final double minLength;
+    private final int width, height, stackSize;
+    private final UserVariables uv;
+    private final File segDir;
+    private final DecimalFormat numFormat;
+    private final int t;
+    private final ExecutorService encoder;
+    private MjpegAviWriter movie;
+
+    public RunnableSegmentationVisualiser(ArrayList<CellData> cellData, double minLength, int width, int height, int stackSize, UserVariables uv, File segDir, DecimalFormat numFormat, int t, ExecutorService encoder) {
+        super(null);
+        this.cellData = cellData;
+        this.minLength = minLength;
+        this.width = width;
+        this.height = height;
+        this.stackSize = stackSize;
+        this.uv = uv;
+        this.segDir = segDir;
+        this.numFormat = numFormat;
+        this.t = t;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public void run() {
+        IJ.showStatus(String.format("Generating segmentation visualisations... %d%%", (int) Math.round(t * 100.0 / stackSize)));
+        int N = cellData.size();
+        ColorProcessor output = new ColorProcessor(width, height);
+        output.setLineWidth(uv.getVisLineWidth());
+        output.setColor(Color.black);
+        output.fill();
+        for (int n = 0; n < N; n++) {
+            int start = cellData.get(n).getStartFrame();
+            int end = cellData.get(n).getEndFrame();
+            int length = cellData.get(n).getLength();
+            if (length > minLength && t + 1 >= start && t < end) {
+                Region[] allRegions = cellData.get(n).getCellRegions();
+                Region current = allRegions[t];
+                short[][] border = current.getOrderedBoundary(width, height, current.getMask(), current.getCentre());
+                output.setColor(Color.yellow);
+                int bsize = border.length;
+                for (int i = 0; i < bsize; i++) {
+                    short[] pix = border[i];
+                    output.drawDot(pix[0], pix[1]);
+                }
+                output.setColor(Color.blue);
+                ArrayList<float[]> centres = current.getCentres();
+                int cl = centres.size();
+                int xc = Math.round(centres.get(cl - 1)[0]);
+                int yc = Math.round(centres.get(cl - 1)[1]);
+                output.fillOval(xc - 1, yc - 1, 3, 3);
+                output.drawString(String.valueOf(n + 1), xc + 2, yc + 2);
+            }
+        }
+        if (movie != null) {
+            encoder.execute(() -> {
+                try {
+                    movie.writeFrame(t, output.getBufferedImage());
+                } catch (IOException e) {
+                    GenUtils.logError(e, "Failed to save segmentation visualisation.");
+                }
+            });
+            return;
+        }
+        /*
+         PNG encoding is handed to a separate executor so that this thread can
+         move on to rendering the next frame
+         */
+        String fileName = String.format("%s%s%s.png", segDir.getAbsolutePath(), File.separator, numFormat.format(t));
+        encoder.execute(() -> {
+            if (!(new FileSaver(new ImagePlus("", output))).saveAsPng(fileName)) {
+                IJ.log(String.format("Failed to save %s", fileName));
+            }
+        });
+    }
+
+    /**
+     * Specify a movie to which this frame should be written, in place of a
+     * PNG file.
+     *
+     * @param movie segmentation movie, shared by all frames
+     */
+    public void setMovie(MjpegAviWriter movie) {
+        this.movie = movie;
+    }
+}
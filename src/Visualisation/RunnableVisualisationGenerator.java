@@ -16,6 +16,7 @@
  */
 package Visualisation;
 
+import Adapt.PipelineEvents;
 import Cell.CellData;
 import Cell.MorphMap;
 import IAClasses.Region;
@@ -25,13 +26,16 @@ import UserVariables.UserVariables;
 import UtilClasses.GenUtils;
 import ij.IJ;
 import ij.ImageStack;
-import ij.gui.Overlay;
+import ij.gui.Roi;
 import ij.gui.TextRoi;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
 import ij.process.FloatProcessor;
 import java.awt.image.IndexColorModel;
 import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class RunnableVisualisationGenerator extends RunnableProcess {
 
@@ -43,10 +47,14 @@ public class RunnableVisualisationGenerator extends RunnableProcess {
     File curvDirName;
     protected DecimalFormat numFormat;
     int t;
-    private Overlay labels;
+    private final AtomicReferenceArray<ArrayList<Roi>> labels;
     private final IndexColorModel lut;
+    private VisualisationOutputMode outputMode = VisualisationOutputMode.IMAGE_SERIES;
+    private FloatFramePool framePool;
+    private MjpegAviWriter velMovie, curveMovie;
+    private double velRange, curveRange;
 
-    public RunnableVisualisationGenerator(ArrayList<CellData> cellData, boolean protMode, ImageStack cytoStack, UserVariables uv, File velDirName, File curvDirName, DecimalFormat numFormat, int t, Overlay labels, IndexColorModel lut) {
+    public RunnableVisualisationGenerator(ArrayList<CellData> cellData, boolean protMode, ImageStack cytoStack, UserVariables uv, File velDirName, File curvDirName, DecimalFormat numFormat, int t, AtomicReferenceArray<ArrayList<Roi>> labels, IndexColorModel lut) {
         super(null);
         this.cellData = cellData;
         this.protMode = protMode;
@@ -63,18 +71,14 @@ public class RunnableVisualisationGenerator extends RunnableProcess {
     @Override
     public void run() {
         IJ.showStatus(String.format("Generating visualisations... %d%%", (int) Math.round(t * 100.0 / cytoStack.getSize())));
+        PipelineEvents.Span visEvent = PipelineEvents.begin(PipelineEvents.Kind.FRAME_VISUALISATION).setFrame(t + 1);
         int N = cellData.size();
         double minLength = protMode ? uv.getBlebLenThresh() : uv.getMinLength();
         int width = cytoStack.getWidth();
         int height = cytoStack.getHeight();
-        FloatProcessor velOutput = new FloatProcessor(width, height);
-        velOutput.setLineWidth(uv.getVisLineWidth());
-        velOutput.setValue(0.0);
-        velOutput.fill();
-        FloatProcessor curveOutput = new FloatProcessor(width, height);
-        curveOutput.setLineWidth(uv.getVisLineWidth());
-        curveOutput.setValue(0.0);
-        curveOutput.fill();
+        SparseFrame velOutput = new SparseFrame(width, height);
+        SparseFrame curveOutput = new SparseFrame(width, height);
+        ArrayList<Roi> frameLabels = new ArrayList<>();
         for (int n = 0; n < N; n++) {
             int start = cellData.get(n).getStartFrame();
             int end = cellData.get(n).getEndFrame();
@@ -91,8 +95,8 @@ public class RunnableVisualisationGenerator extends RunnableProcess {
                 for (int j = 0; j < upLength; j++) {
                     int x = (int) Math.round(xCoords[index][j]);
                     int y = (int) Math.round(yCoords[index][j]);
-                    velOutput.putPixelValue(x, y, smoothVelocities[index][j]);
-                    curveOutput.putPixelValue(x, y, curvatures[index][j]);
+                    velOutput.add(x, y, smoothVelocities[index][j]);
+                    curveOutput.add(x, y, curvatures[index][j]);
                 }
                 Region current = allRegions[t];
                 ArrayList<float[]> centres = current.getCentres();
@@ -101,18 +105,110 @@ public class RunnableVisualisationGenerator extends RunnableProcess {
                 int yc = (int) Math.round(centres.get(cl - 1)[1]);
                 TextRoi label = new TextRoi(xc + 2, yc + 2, String.valueOf(n));
                 label.setPosition(t + 1);
-                labels.add(label);
+                frameLabels.add(label);
             }
         }
-        String velFileName = String.format("%s%s%s.tiff", velDirName.getAbsolutePath(), File.separator, numFormat.format(t));
-        String curveFileName = String.format("%s%s%s.tiff", curvDirName.getAbsolutePath(), File.separator, numFormat.format(t));
+        /*
+         Each task owns one slot, so labels are published without locking
+         and merged once all frames are done
+         */
+        labels.set(t, frameLabels);
         try {
-//            IJ.log(String.format("Saving %s", velFileName));
-            BioFormatsImageWriter.saveImage(velOutput, new File(velFileName), lut);
-//            IJ.log(String.format("Saving %s", curveFileName));
-            BioFormatsImageWriter.saveImage(curveOutput, new File(curveFileName), lut);
+            if (outputMode == VisualisationOutputMode.MOVIE) {
+                velMovie.writeFrame(t, toMovieFrame(velOutput, velRange).getBufferedImage());
+                curveMovie.writeFrame(t, toMovieFrame(curveOutput, curveRange).getBufferedImage());
+            } else {
+                saveFrame(velOutput, velDirName);
+                saveFrame(curveOutput, curvDirName);
+            }
         } catch (Exception e) {
             GenUtils.logError(e, "Failed to saved visualisation image.");
         }
+        visEvent.setRegionCount(frameLabels.size()).commit();
+    }
+
+    void saveFrame(SparseFrame frame, File dir) throws Exception {
+        if (outputMode == VisualisationOutputMode.SPARSE_TABLE) {
+            frame.save(new File(String.format("%s%s%s.csv", dir.getAbsolutePath(), File.separator, numFormat.format(t))));
+            return;
+        }
+        File file = new File(String.format("%s%s%s.tiff", dir.getAbsolutePath(), File.separator, numFormat.format(t)));
+        if (framePool == null) {
+            BioFormatsImageWriter.saveImage(frame.toDense(), file, lut);
+            return;
+        }
+        FloatProcessor output = framePool.acquire();
+        try {
+            frame.render(output);
+            BioFormatsImageWriter.saveImage(output, file, lut);
+        } finally {
+            frame.clear(output);
+            framePool.release(output);
+        }
+    }
+
+    /*
+     * Values are mapped onto the LUT using a fixed range, symmetric about zero,
+     * so that colours are comparable between frames of the movie.
+     */
+    ColorProcessor toMovieFrame(SparseFrame frame, double range) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        ByteProcessor output = new ByteProcessor(width, height);
+        output.setColorModel(lut);
+        output.setValue(toLutIndex(0.0, range));
+        output.fill();
+        float[] pixels = new float[width * height];
+        frame.render(new FloatProcessor(width, height, pixels));
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != 0.0f) {
+                output.set(i, toLutIndex(pixels[i], range));
+            }
+        }
+        return output.convertToColorProcessor();
+    }
+
+    static int toLutIndex(double value, double range) {
+        if (!(range > 0.0)) {
+            return 128;
+        }
+        int index = (int) Math.round(127.5 + 127.5 * value / range);
+        return index < 0 ? 0 : index > 255 ? 255 : index;
+    }
+
+    /**
+     * Specify the movies to which frames are written in
+     * {@link VisualisationOutputMode#MOVIE} mode, shared by all tasks.
+     *
+     * @param velMovie velocity visualisation movie
+     * @param curveMovie curvature visualisation movie
+     * @param velRange magnitude of the velocity mapped to either end of the LUT
+     * @param curveRange magnitude of the curvature mapped to either end of the
+     * LUT
+     */
+    public void setMovieWriters(MjpegAviWriter velMovie, MjpegAviWriter curveMovie, double velRange, double curveRange) {
+        this.velMovie = velMovie;
+        this.curveMovie = curveMovie;
+        this.velRange = velRange;
+        this.curveRange = curveRange;
+    }
+
+    /**
+     * Specify how visualisations should be written to disk.
+     *
+     * @param outputMode output mode
+     */
+    public void setOutputMode(VisualisationOutputMode outputMode) {
+        this.outputMode = outputMode;
+    }
+
+    /**
+     * Specify a pool of dense frame buffers, shared with other visualisation
+     * tasks, to be used when full-frame images are written.
+     *
+     * @param framePool pool of frame buffers
+     */
+    public void setFramePool(FloatFramePool framePool) {
+        this.framePool = framePool;
     }
 }
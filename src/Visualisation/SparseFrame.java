@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import UtilClasses.GenVariables;
+import ij.process.FloatProcessor;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The non-zero pixels of a single visualisation frame, stored as a list of
+ * coordinates and values. Pixels are kept in the order they are added, so
+ * rendering reproduces the effect of writing them one by one into a dense
+ * image.
+ */
+public class SparseFrame {
+
+    public static final String[] HEADINGS = {"X", "Y", "Value"};
+    private final int width, height;
+    private int[] x = new int[256];
+    private int[] y = new int[256];
+    private float[] values = new float[256];
+    private int size = 0;
+
+    public SparseFrame(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Adds a pixel. Pixels outside the frame are ignored.
+     *
+     * @param px x-coordinate
+     * @param py y-coordinate
+     * @param value pixel value
+     */
+    public void add(int px, int py, double value) {
+        if (px < 0 || py < 0 || px >= width || py >= height) {
+            return;
+        }
+        if (size >= x.length) {
+            int capacity = x.length * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        x[size] = px;
+        y[size] = py;
+        values[size] = (float) value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Writes all pixels into a dense image of the same size as this frame.
+     *
+     * @param output image to draw into
+     */
+    public void render(FloatProcessor output) {
+        float[] pixels = (float[]) output.getPixels();
+        for (int i = 0; i < size; i++) {
+            pixels[y[i] * width + x[i]] = values[i];
+        }
+    }
+
+    /**
+     * Resets all pixels in output that were drawn by
+     * {@link #render(FloatProcessor)} to zero, leaving the image blank without
+     * visiting every pixel.
+     *
+     * @param output image previously drawn into
+     */
+    public void clear(FloatProcessor output) {
+        float[] pixels = (float[]) output.getPixels();
+        for (int i = 0; i < size; i++) {
+            pixels[y[i] * width + x[i]] = 0.0f;
+        }
+    }
+
+    /**
+     * Creates a new dense image from this frame.
+     *
+     * @return a new image, zero everywhere except at the stored pixels
+     */
+    public FloatProcessor toDense() {
+        FloatProcessor output = new FloatProcessor(width, height);
+        render(output);
+        return output;
+    }
+
+    /**
+     * Saves this frame as a CSV file, with the frame dimensions on the first
+     * line, followed by a heading line and one line per pixel.
+     *
+     * @param file destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), GenVariables.UTF8))) {
+            writer.println(String.format("%d,%d", width, height));
+            writer.println(String.join(",", HEADINGS));
+            for (int i = 0; i < size; i++) {
+                writer.print(x[i]);
+                writer.print(',');
+                writer.print(y[i]);
+                writer.print(',');
+                writer.println(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Loads a frame previously saved with {@link #save(File)}.
+     *
+     * @param file the file to load
+     * @return the frame
+     * @throws IOException if the file cannot be read or is not in the expected
+     * format
+     */
+    public static SparseFrame load(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), GenVariables.UTF8))) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException(String.format("%s is empty.", file.getAbsolutePath()));
+            }
+            String[] dims = line.split(",");
+            SparseFrame frame = new SparseFrame(Integer.parseInt(dims[0].trim()), Integer.parseInt(dims[1].trim()));
+            reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] words = line.split(",");
+                if (words.length < 3) {
+                    continue;
+                }
+                frame.add(Integer.parseInt(words[0].trim()), Integer.parseInt(words[1].trim()),
+                        Float.parseFloat(words[2].trim()));
+            }
+            return frame;
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("%s is not a valid sparse frame.", file.getAbsolutePath()), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+/**
+ * Ways in which per-frame boundary visualisations can be written to disk.
+ */
+public enum VisualisationOutputMode {
+    /**
+     * One full-frame image per frame.
+     */
+    IMAGE_SERIES,
+    /**
+     * One table per frame, listing the coordinates and values of boundary
+     * pixels only. Dense images can be rebuilt with {@link SparseFrame}.
+     */
+    SPARSE_TABLE,
+    /**
+     * One Motion-JPEG AVI file per visualisation, to which frames are
+     * streamed as they are rendered.
+     */
+    MOVIE
+}
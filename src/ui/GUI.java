@@ -17,11 +17,14 @@
 package ui;
 
 import Adapt.Analyse_Movie;
+import Adapt.FluorescenceDistAnalyser;
+import Adapt.PreviewFrameCache;
 import Adapt.StaticVariables;
 import Adapt.TaskListener;
 import UIClasses.GUIMethods;
 import UIClasses.PropertyExtractor;
 import UserVariables.UserVariables;
+import Visualisation.VisualisationOutputMode;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
@@ -35,7 +38,6 @@ import ij.process.TypeConverter;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Toolkit;
-import java.util.ArrayList;
 import java.util.Properties;
 import javax.swing.DefaultBoundedRangeModel;
 import javax.swing.DefaultComboBoxModel;
@@ -55,9 +57,15 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
     private boolean wasOKed = false;
     private final int MAX_DIM = 512;
     private final static UserVariables UV = new UserVariables();
-    ArrayList<Thread> previewThreads = new ArrayList<>();
+    private final PreviewEngine previewEngine = new PreviewEngine(new TaskListener() {
+        public void threadComplete(Runnable runner) {
+            generatePreviewComplete((Analyse_Movie) runner);
+        }
+    });
     private final PointRoi roi;
+    private final PreviewFrameCache previewCache;
     private final Properties props = new Properties();
+    private int greyLevels = FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS;
 
     /**
      * Creates new form GUI
@@ -66,6 +74,7 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         super(parent, modal);
         this.stacks = stacks;
         this.title = title;
+        this.previewCache = new PreviewFrameCache(stacks);
         cytoProc = stacks[0].getProcessor(1).duplicate();
         cytoProc = checkImageDimensions(cytoProc);
         cytoImp = new ImagePlus("", cytoProc);
@@ -124,6 +133,10 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         cortexDepthLabel = new javax.swing.JLabel();
         visLineWidthLabel = new javax.swing.JLabel();
         visLineWidthTextField = new javax.swing.JTextField();
+        greyLevelsLabel = new javax.swing.JLabel();
+        greyLevelsTextField = new javax.swing.JTextField();
+        visOutputModeLabel = new javax.swing.JLabel();
+        visOutputModeComboBox = new javax.swing.JComboBox<>();
         jPanel4 = new javax.swing.JPanel();
         minCurveRangeLabel = new javax.swing.JLabel();
         minCurveRangeField = new javax.swing.JTextField();
@@ -142,6 +155,7 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         filoSizeLabel = new javax.swing.JLabel();
         filoSizeField = new javax.swing.JTextField();
         displayPlotsToggleButton = new javax.swing.JToggleButton();
+        saveBlebDataToggleButton = new javax.swing.JToggleButton();
         filoMinSizeLabel = new javax.swing.JLabel();
         filoMinSizeTextField = new javax.swing.JTextField();
         jPanel3 = new javax.swing.JPanel();
@@ -493,6 +507,50 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         gridBagConstraints.insets = new java.awt.Insets(0, 0, 0, 10);
         advancedTab.add(visLineWidthTextField, gridBagConstraints);
 
+        greyLevelsLabel.setText(StaticVariables.GREY_LEVELS);
+        greyLevelsLabel.setLabelFor(greyLevelsTextField);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 7;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.LINE_START;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.weighty = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(0, 10, 0, 0);
+        advancedTab.add(greyLevelsLabel, gridBagConstraints);
+
+        greyLevelsTextField.setText(String.valueOf(FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS));
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 7;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.LINE_END;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.weighty = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(0, 0, 0, 10);
+        advancedTab.add(greyLevelsTextField, gridBagConstraints);
+
+        visOutputModeLabel.setText(StaticVariables.VIS_OUTPUT_MODE);
+        visOutputModeLabel.setLabelFor(visOutputModeComboBox);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 8;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.LINE_START;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.weighty = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(0, 10, 0, 0);
+        advancedTab.add(visOutputModeLabel, gridBagConstraints);
+
+        visOutputModeComboBox.setModel(new DefaultComboBoxModel<>(VisualisationOutputMode.values()));
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 8;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.LINE_END;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.weighty = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(0, 0, 0, 10);
+        advancedTab.add(visOutputModeComboBox, gridBagConstraints);
+
         jTabbedPane1.addTab("Advanced", advancedTab);
 
         jPanel4.setLayout(new java.awt.GridBagLayout());
@@ -721,6 +779,18 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         gridBagConstraints.insets = new java.awt.Insets(10, 10, 10, 10);
         jPanel4.add(displayPlotsToggleButton, gridBagConstraints);
 
+        saveBlebDataToggleButton.setSelected(true);
+        saveBlebDataToggleButton.setText(StaticVariables.SAVE_BLEB_DATA);
+        saveBlebDataToggleButton.setEnabled(UV.isAnalyseProtrusions() && UV.isBlebDetect());
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 11;
+        gridBagConstraints.gridwidth = 2;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.weighty = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(10, 10, 10, 10);
+        jPanel4.add(saveBlebDataToggleButton, gridBagConstraints);
+
         filoMinSizeLabel.setText(StaticVariables.FILO_MIN_SIZE);
         filoMinSizeLabel.setEnabled(UV.isAnalyseProtrusions() && !UV.isBlebDetect());
         filoMinSizeLabel.setLabelFor(filoMinSizeTextField);
@@ -911,30 +981,11 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         if (previewScrollBar.getValueIsAdjusting() || !setVariables()) {
             return;
         }
-        for (int i = 0; i < previewThreads.size(); i++) {
-            Thread currentThread = previewThreads.get(i);
-//            try {
-            currentThread.interrupt();
-//                currentThread.join();
-//            } catch (InterruptedException e) {
-//                IJ.error("Failed to generate preview.");
-//                return;
-//            }
-        }
-        previewThreads = new ArrayList<>();
         previewField.setText(String.valueOf(previewScrollBar.getValue()));
-        final Analyse_Movie previewAnalyser = new Analyse_Movie(stacks, false, false, UV, null, roi);
+        Analyse_Movie previewAnalyser = new Analyse_Movie(stacks, false, false, UV, null, roi);
         previewAnalyser.preparePreview(previewScrollBar.getValue(), (UserVariables) UV.clone());
-        previewAnalyser.addListener(new TaskListener() {
-            public void threadComplete(Runnable runner) {
-                if (!Thread.interrupted()) {
-                    generatePreviewComplete((Analyse_Movie) runner);
-                }
-            }
-        });
-        Thread previewThread = new Thread(previewAnalyser);
-        previewThread.start();
-        previewThreads.add(previewThread);
+        previewAnalyser.setPreviewCache(previewCache);
+        previewEngine.request(previewAnalyser);
     }//GEN-LAST:event_previewScrollBarAdjustmentValueChanged
 
     private void generatePreviewComplete(Analyse_Movie analyser) {
@@ -949,6 +1000,12 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         }
     }
 
+    @Override
+    public void dispose() {
+        previewEngine.shutdown();
+        super.dispose();
+    }
+
     private void blebDetectRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_blebDetectRadioButtonActionPerformed
         filoDetectRadioButton.setSelected(!blebDetectRadioButton.isSelected());
         boolean enabledB = anaProtToggleButton.isSelected() && blebDetectRadioButton.isEnabled();
@@ -962,6 +1019,7 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         enableComponentOnSelect(null, useSigThreshToggleButton, blebDetectRadioButton, enabledB);
         useSigThreshToggleButton.setEnabled(anaProtToggleButton.isSelected() && blebDetectRadioButton.isSelected());
         displayPlotsToggleButton.setEnabled(anaProtToggleButton.isSelected() && blebDetectRadioButton.isSelected());
+        saveBlebDataToggleButton.setEnabled(anaProtToggleButton.isSelected() && blebDetectRadioButton.isSelected());
         useSigThreshToggleButtonActionPerformed(null);
     }//GEN-LAST:event_blebDetectRadioButtonActionPerformed
 
@@ -1013,10 +1071,15 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
             UV.setVisLineWidth(Integer.parseInt(visLineWidthTextField.getText()));
             UV.setDisplayPlots(displayPlotsToggleButton.isSelected());
             UV.setFiloSizeMin(Double.parseDouble(filoMinSizeTextField.getText()));
+            greyLevels = Integer.parseInt(greyLevelsTextField.getText());
         } catch (NumberFormatException e) {
             IJ.error("Number formatting error " + e.toString());
             return false;
         }
+        if (greyLevels < 2 || greyLevels > 256) {
+            IJ.error(String.format("%s must be between 2 and 256.", StaticVariables.GREY_LEVELS));
+            return false;
+        }
         setProperties(props, this);
         return true;
     }
@@ -1033,6 +1096,18 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
         return UV;
     }
 
+    public int getGreyLevels() {
+        return greyLevels;
+    }
+
+    public boolean isSaveBlebDataFiles() {
+        return saveBlebDataToggleButton.isSelected();
+    }
+
+    public VisualisationOutputMode getVisualisationOutputMode() {
+        return (VisualisationOutputMode) visOutputModeComboBox.getSelectedItem();
+    }
+
     public boolean isWasOKed() {
         return wasOKed;
     }
@@ -1124,6 +1199,8 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
     private javax.swing.JToggleButton genMorphToggleButton;
     private javax.swing.JToggleButton genSigDistToggleButton;
     private javax.swing.JToggleButton genVisToggleButton;
+    private javax.swing.JLabel greyLevelsLabel;
+    private javax.swing.JTextField greyLevelsTextField;
     private javax.swing.JTextField greyThreshField;
     private javax.swing.JLabel greyThreshLabel;
     private javax.swing.JPanel jPanel2;
@@ -1143,6 +1220,7 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
     private javax.swing.JScrollBar previewScrollBar;
     private javax.swing.JToggleButton previewToggleButton;
     private javax.swing.JButton runButton;
+    private javax.swing.JToggleButton saveBlebDataToggleButton;
     private java.awt.Canvas sigCanvas;
     private javax.swing.JLabel sigLabel;
     private javax.swing.JTextField sigRecThreshField;
@@ -1163,5 +1241,7 @@ public class GUI extends javax.swing.JDialog implements GUIMethods {
     private javax.swing.JToggleButton useSigThreshToggleButton;
     private javax.swing.JLabel visLineWidthLabel;
     private javax.swing.JTextField visLineWidthTextField;
+    private javax.swing.JComboBox<VisualisationOutputMode> visOutputModeComboBox;
+    private javax.swing.JLabel visOutputModeLabel;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ui;
+
+import Adapt.Analyse_Movie;
+import Adapt.TaskListener;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+/**
+ * Generates segmentation previews on a single background thread. Only the
+ * most recent request is ever rendered: requests that arrive while a preview
+ * is being generated replace any request still waiting, and the preview in
+ * progress is cancelled at its next checkpoint. Listeners are notified on the
+ * event dispatch thread.
+ */
+public class PreviewEngine {
+
+    private final ExecutorService worker;
+    private final AtomicReference<Analyse_Movie> pending = new AtomicReference<>();
+    private final TaskListener listener;
+    private volatile Analyse_Movie current;
+    private volatile Analyse_Movie latest;
+
+    /**
+     * Creates a new preview engine.
+     *
+     * @param listener notified, on the event dispatch thread, when the
+     * latest requested preview is complete
+     */
+    public PreviewEngine(TaskListener listener) {
+        this.listener = listener;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Adapt preview");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests a preview, superseding all earlier requests.
+     *
+     * @param analyser analyser prepared with the slice and parameters to be
+     * previewed
+     */
+    public void request(Analyse_Movie analyser) {
+        latest = analyser;
+        Analyse_Movie previous = pending.getAndSet(analyser);
+        Analyse_Movie running = current;
+        if (running != null) {
+            running.cancelPreview();
+        }
+        /*
+         If a request was already waiting, a task is already queued to pick up
+         whichever request is the latest when it starts
+         */
+        if (previous == null && !worker.isShutdown()) {
+            worker.execute(this::runLatest);
+        }
+    }
+
+    private void runLatest() {
+        Analyse_Movie analyser = pending.getAndSet(null);
+        if (analyser == null) {
+            return;
+        }
+        current = analyser;
+        try {
+            if (pending.get() != null) {
+                return;
+            }
+            analyser.doWork();
+        } catch (CancellationException e) {
+            return;
+        } finally {
+            current = null;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (analyser == latest) {
+                listener.threadComplete(analyser);
+            }
+        });
+    }
+
+    /**
+     * Cancels any preview in progress and stops the worker thread.
+     */
+    public void shutdown() {
+        latest = null;
+        pending.set(null);
+        Analyse_Movie running = current;
+        if (running != null) {
+            running.cancelPreview();
+        }
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BlebDataAggregatorTest {
+
+    public BlebDataAggregatorTest() {
+    }
+
+    /**
+     * Test of addBleb method, of class BlebDataAggregator.
+     */
+    @Test
+    public void testAddBleb() {
+        System.out.println("addBleb");
+        BlebDataAggregator instance = new BlebDataAggregator(new String[]{"A", "B"},
+                new String[]{"B"}, 2.0);
+        instance.addBleb(new double[][]{{1.0, 2.0, 3.0}, {1.0, 4.0, 2.0}}, 3);
+        instance.addBleb(new double[][]{{3.0, 4.0}, {10.0, 5.0}}, 2);
+        assertEquals(2, instance.getBlebCount());
+        assertArrayEquals(new double[]{0.0, 2.0, 4.0}, instance.getTimes(), 1.0e-9);
+        assertArrayEquals(new double[]{2.0, 3.0, 3.0}, instance.getMeans("A"), 1.0e-9);
+        assertArrayEquals(new double[]{1.0, 1.0, 0.0}, instance.getStdErrs("A"), 1.0e-9);
+        assertArrayEquals(new double[]{0.625, 0.75, 0.5}, instance.getMeans("B"), 1.0e-9);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CellTrajectoriesTest {
+
+    public CellTrajectoriesTest() {
+    }
+
+    /**
+     * Test of add method, of class CellTrajectories.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        CellTrajectories instance = new CellTrajectories();
+        for (int t = 0; t < 300; t++) {
+            instance.add(t, t * 5.0, t / 100, t * 0.5, -t);
+        }
+        assertEquals(300, instance.size());
+        assertEquals(299, instance.getFrame(299));
+        assertEquals(1495.0, instance.getTime(299), 0.0);
+        assertEquals(2, instance.getCellId(299));
+        assertEquals(149.5, instance.getX(299), 0.0);
+        assertEquals(-299.0, instance.getY(299), 0.0);
+        assertEquals(1, instance.getCellId(100));
+    }
+
+    /**
+     * Test of getHeadings method, of class CellTrajectories.
+     */
+    @Test
+    public void testGetHeadings() {
+        System.out.println("getHeadings");
+        String[] result = CellTrajectories.getHeadings();
+        assertEquals(5, result.length);
+        assertEquals(CellTrajectories.FRAME, result[0]);
+        assertEquals(CellTrajectories.CELL_ID, result[2]);
+        result[0] = null;
+        assertEquals(CellTrajectories.FRAME, CellTrajectories.getHeadings()[0]);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.process.ByteProcessor;
+import java.awt.Rectangle;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DistanceTransformTest {
+
+    private final int FG = 0, BG = 255;
+
+    public DistanceTransformTest() {
+    }
+
+    /**
+     * Test of squaredEDT method, of class DistanceTransform.
+     */
+    @Test
+    public void testSquaredEDT() {
+        System.out.println("squaredEDT");
+        int width = 7, height = 5;
+        boolean[] feature = new boolean[width * height];
+        feature[2 * width + 3] = true;
+        int[] result = DistanceTransform.squaredEDT(feature, width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expResult = (x - 3) * (x - 3) + (y - 2) * (y - 2);
+                assertEquals(expResult, result[y * width + x]);
+            }
+        }
+    }
+
+    /**
+     * Test of getProtrusions method, of class DistanceTransform.
+     */
+    @Test
+    public void testGetProtrusions() {
+        System.out.println("getProtrusions");
+        ByteProcessor mask = new ByteProcessor(64, 64);
+        mask.setValue(BG);
+        mask.fill();
+        mask.setValue(FG);
+        mask.setRoi(new Rectangle(10, 10, 20, 20));
+        mask.fill();
+        mask.setRoi(new Rectangle(30, 19, 15, 2));
+        mask.fill();
+        mask.resetRoi();
+        ByteProcessor result = DistanceTransform.getProtrusions(mask, new Rectangle(10, 10, 35, 20), 3, FG, BG);
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) {
+                boolean protrusion = x >= 34 && x < 45 && y >= 19 && y < 21;
+                boolean body = x >= 10 && x < 34 && y >= 10 && y < 30;
+                if (protrusion) {
+                    assertEquals(FG, result.get(x, y));
+                } else if (!body) {
+                    assertEquals(BG, result.get(x, y));
+                }
+            }
+        }
+        assertEquals(BG, result.get(20, 20));
+    }
+
+    /**
+     * Test of open method, of class DistanceTransform, for a region touching
+     * the image border.
+     */
+    @Test
+    public void testOpenAtImageBorder() {
+        System.out.println("open");
+        ByteProcessor mask = new ByteProcessor(20, 20);
+        mask.setValue(BG);
+        mask.fill();
+        mask.setValue(FG);
+        mask.setRoi(new Rectangle(0, 0, 2, 20));
+        mask.fill();
+        mask.resetRoi();
+        Rectangle bounds = new Rectangle(0, 0, 2, 20);
+        boolean[] result = DistanceTransform.open(mask, bounds, 2, FG);
+        for (boolean r : result) {
+            assertFalse(r);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.ImagePlus;
+import ij.measure.Measurements;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ImageStatistics;
+import ij.process.ShortProcessor;
+import java.awt.Rectangle;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FluorescenceDistAnalyserTest {
+
+    private static ByteProcessor image;
+    private static ByteProcessor mask;
+    private static final Rectangle BOUNDS = new Rectangle(5, 8, 20, 15);
+
+    public FluorescenceDistAnalyserTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Random r = new Random(1);
+        image = new ByteProcessor(40, 30);
+        mask = new ByteProcessor(40, 30);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.set(x, y, r.nextInt(256));
+                if (BOUNDS.contains(x, y) && r.nextInt(4) > 0) {
+                    mask.set(x, y, 255);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of doAnalysis method, of class FluorescenceDistAnalyser, against
+     * a dense co-occurrence matrix calculated over the whole image.
+     */
+    @Test
+    public void testDoAnalysis() {
+        System.out.println("doAnalysis");
+        int offset = 2;
+        double[] expResult = getDenseFeatures(offset, 0);
+        FluorescenceDistAnalyser instance = new FluorescenceDistAnalyser(null, null, offset);
+        for (int i = 0; i < 2; i++) {
+            instance.setInputs(new ImagePlus("", image), mask, new Rectangle(BOUNDS));
+            instance.doAnalysis();
+            assertEquals(expResult[0], instance.getContrast(), 1.0e-6);
+            assertEquals(expResult[1], instance.getHomogeneity(), 1.0e-9);
+            assertEquals(expResult[2], instance.getEnergy(), 1.0e-9);
+        }
+    }
+
+    /**
+     * Test of doAnalysis method, of class FluorescenceDistAnalyser, with
+     * multiple offsets and directions.
+     */
+    @Test
+    public void testDoAnalysisMultiDirection() {
+        System.out.println("doAnalysisMultiDirection");
+        int[] offsets = {1, 3};
+        int[] directions = {0, 45, 90, 135};
+        FluorescenceDistAnalyser instance = new FluorescenceDistAnalyser(new ImagePlus("", image),
+                mask, new Rectangle(BOUNDS), offsets, directions);
+        instance.doAnalysis();
+        double meanContrast = 0.0;
+        for (int o = 0; o < offsets.length; o++) {
+            for (int d = 0; d < directions.length; d++) {
+                int[] step = FluorescenceDistAnalyser.getStep(directions[d]);
+                double[] expResult = getDenseFeatures(step[0] * offsets[o], step[1] * offsets[o]);
+                assertEquals(expResult[0], instance.getContrast(o, d), 1.0e-6);
+                assertEquals(expResult[1], instance.getHomogeneity(o, d), 1.0e-9);
+                assertEquals(expResult[2], instance.getEnergy(o, d), 1.0e-9);
+                meanContrast += expResult[0];
+            }
+        }
+        assertEquals(instance.getContrast(0, 0), instance.getContrast(), 0.0);
+        assertEquals(meanContrast / (offsets.length * directions.length), instance.getAverageContrast(), 1.0e-6);
+        assertEquals(FluorescenceDistAnalyser.PARAM_HEADINGS.length + 27,
+                FluorescenceDistAnalyser.getParamHeadings(offsets, directions).length);
+    }
+
+    /**
+     * Test of setStats method, of class FluorescenceDistAnalyser, against
+     * ImageStatistics.
+     */
+    @Test
+    public void testSetStats() {
+        System.out.println("setStats");
+        ImageProcessor ip = image.duplicate();
+        ip.setMask(mask);
+        ImageStatistics expResult = ImageStatistics.getStatistics(ip,
+                Measurements.MEAN + Measurements.STD_DEV + Measurements.KURTOSIS + Measurements.SKEWNESS,
+                null);
+        FluorescenceDistAnalyser instance = new FluorescenceDistAnalyser(new ImagePlus("", image),
+                mask, new Rectangle(BOUNDS), FluorescenceDistAnalyser.DEFAULT_OFFSETS,
+                FluorescenceDistAnalyser.DEFAULT_DIRECTIONS);
+        instance.doAnalysis();
+        assertEquals(expResult.mean, instance.getMean(), 1.0e-9);
+        assertEquals(expResult.stdDev, instance.getStd(), 1.0e-9);
+        assertEquals(expResult.skewness, instance.getSkew(), 1.0e-9);
+        assertEquals(expResult.kurtosis, instance.getKurt(), 1.0e-9);
+    }
+
+    /**
+     * Test of setStats method, of class FluorescenceDistAnalyser, for a 16-bit
+     * image, against ImageStatistics of its 8-bit conversion.
+     */
+    @Test
+    public void testSetStats16Bit() {
+        System.out.println("setStats16Bit");
+        ShortProcessor image16 = new ShortProcessor(image.getWidth(), image.getHeight());
+        for (int i = 0; i < image.getPixelCount(); i++) {
+            image16.set(i, 300 + 13 * image.get(i) + i % 7);
+        }
+        image16.resetMinAndMax();
+        ImageProcessor ip = image16.convertToByteProcessor(true);
+        ip.setMask(mask);
+        ImageStatistics expResult = ImageStatistics.getStatistics(ip,
+                Measurements.MEAN + Measurements.STD_DEV + Measurements.KURTOSIS + Measurements.SKEWNESS,
+                null);
+        FluorescenceDistAnalyser instance = new FluorescenceDistAnalyser(new ImagePlus("", image16),
+                mask, new Rectangle(BOUNDS), FluorescenceDistAnalyser.DEFAULT_OFFSETS,
+                FluorescenceDistAnalyser.DEFAULT_DIRECTIONS);
+        instance.doAnalysis();
+        assertEquals(expResult.mean, instance.getMean(), 1.0e-9);
+        assertEquals(expResult.stdDev, instance.getStd(), 1.0e-9);
+        assertEquals(expResult.skewness, instance.getSkew(), 1.0e-9);
+        assertEquals(expResult.kurtosis, instance.getKurt(), 1.0e-9);
+    }
+
+    /**
+     * Test of doAnalysis method, of class FluorescenceDistAnalyser, with a
+     * 16-bit image quantised to fewer grey levels.
+     */
+    @Test
+    public void testDoAnalysisGreyLevels() {
+        System.out.println("doAnalysisGreyLevels");
+        ShortProcessor image16 = new ShortProcessor(image.getWidth(), image.getHeight());
+        ByteProcessor quantised = new ByteProcessor(image.getWidth(), image.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image16.set(x, y, 1000 + 16 * image.get(x, y));
+                quantised.set(x, y, image.get(x, y) / 16);
+            }
+        }
+        FluorescenceDistAnalyser instance = new FluorescenceDistAnalyser(new ImagePlus("", image16),
+                mask, new Rectangle(BOUNDS), new int[]{1}, new int[]{0}, 16);
+        instance.setIntensityRange(1000.0, 1000.0 + 16 * 256);
+        instance.doAnalysis();
+        FluorescenceDistAnalyser expResult = new FluorescenceDistAnalyser(new ImagePlus("", quantised),
+                mask, new Rectangle(BOUNDS), new int[]{1}, new int[]{0});
+        expResult.doAnalysis();
+        assertEquals(expResult.getContrast(), instance.getContrast(), 1.0e-9);
+        assertEquals(expResult.getHomogeneity(), instance.getHomogeneity(), 1.0e-9);
+        assertEquals(expResult.getEnergy(), instance.getEnergy(), 1.0e-9);
+    }
+
+    private double[] getDenseFeatures(int dx, int dy) {
+        double[][] glcm = new double[256][256];
+        int count = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int nx = x + dx, ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < image.getWidth() && ny < image.getHeight()
+                        && mask.get(x, y) > 0 && mask.get(nx, ny) > 0) {
+                    glcm[image.get(x, y)][image.get(nx, ny)]++;
+                    count++;
+                }
+            }
+        }
+        double contrast = 0.0, energy = 0.0, homogeneity = 0.0;
+        for (int j = 0; j < 256; j++) {
+            for (int i = 0; i < 256; i++) {
+                double p = glcm[i][j] / count;
+                contrast += (i - j) * (i - j) * p;
+                energy += p * p;
+                homogeneity += p / (1.0 + Math.abs(i - j));
+            }
+        }
+        return new double[]{contrast, homogeneity, energy};
+    }
+}
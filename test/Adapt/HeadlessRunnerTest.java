@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import Visualisation.VisualisationOutputMode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HeadlessRunnerTest {
+
+    public HeadlessRunnerTest() {
+    }
+
+    /**
+     * Test of listMovies method, of class HeadlessRunner.
+     */
+    @Test
+    public void testListMovies() throws IOException {
+        System.out.println("listMovies");
+        File dir = Files.createTempDirectory("adapt").toFile();
+        File b = new File(dir, "b.tif");
+        File a = new File(dir, "a.tif");
+        b.createNewFile();
+        a.createNewFile();
+        new File(dir, "sub").mkdir();
+        ArrayList<File> result = HeadlessRunner.listMovies(dir);
+        assertEquals(2, result.size());
+        assertEquals(a, result.get(0));
+        assertEquals(b, result.get(1));
+        assertEquals(1, HeadlessRunner.listMovies(b).size());
+        a.delete();
+        b.delete();
+        new File(dir, "sub").delete();
+        dir.delete();
+    }
+
+    /**
+     * Test of parseArgs method, of class HeadlessRunner.
+     */
+    @Test
+    public void testParseArgs() throws IOException {
+        System.out.println("parseArgs");
+        File movie = File.createTempFile("adapt", ".tif");
+        movie.deleteOnExit();
+        HeadlessRunner instance = new HeadlessRunner();
+        instance.parseArgs(new String[]{"-p", "params.csv", "-t", "2", "--profile", "movie", movie.getPath()});
+        assertEquals(new File("params.csv"), instance.getParamFile());
+        assertEquals(2, instance.getThreads());
+        assertEquals(VisualisationOutputMode.MOVIE, instance.getVisualisationOutputMode());
+        instance = new HeadlessRunner();
+        instance.parseArgs(new String[]{"-p", "params.csv", "--profile", "SPARSE", movie.getPath()});
+        assertEquals(VisualisationOutputMode.SPARSE_TABLE, instance.getVisualisationOutputMode());
+        String[][] invalid = {
+            {movie.getPath()},
+            {"-p", "params.csv"},
+            {"-p", "params.csv", "-t", "0", movie.getPath()},
+            {"-p", "params.csv", "--colour", movie.getPath()},
+            {"-p", "params.csv", "-s", movie.getPath(), "-s", movie.getPath(), movie.getPath()},
+            {"-p", "params.csv", movie.getPath(), movie.getPath()},
+            {"-p"}};
+        for (String[] args : invalid) {
+            try {
+                new HeadlessRunner().parseArgs(args);
+                fail(String.join(" ", args));
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    /**
+     * Test of readOptions method, of class HeadlessRunner.
+     */
+    @Test
+    public void testReadOptions() throws IOException {
+        System.out.println("readOptions");
+        Properties props = new Properties();
+        props.setProperty(StaticVariables.GREY_LEVELS, " 32 ");
+        props.setProperty(StaticVariables.SAVE_BLEB_DATA, "false");
+        props.setProperty(StaticVariables.VIS_OUTPUT_MODE, "SPARSE_TABLE");
+        HeadlessRunner instance = new HeadlessRunner();
+        assertEquals(FluorescenceDistAnalyser.DEFAULT_GREY_LEVELS, instance.getGreyLevels());
+        assertTrue(instance.isSaveBlebDataFiles());
+        instance.readOptions(props);
+        assertEquals(32, instance.getGreyLevels());
+        assertFalse(instance.isSaveBlebDataFiles());
+        assertEquals(VisualisationOutputMode.SPARSE_TABLE, instance.getVisualisationOutputMode());
+        instance = new HeadlessRunner();
+        File movie = File.createTempFile("adapt", ".tif");
+        movie.deleteOnExit();
+        instance.parseArgs(new String[]{"-p", "params.csv", "--profile", "images", movie.getPath()});
+        instance.readOptions(props);
+        assertEquals(VisualisationOutputMode.IMAGE_SERIES, instance.getVisualisationOutputMode());
+        props.setProperty(StaticVariables.VIS_OUTPUT_MODE, "PNG");
+        try {
+            new HeadlessRunner().readOptions(props);
+            fail("PNG");
+        } catch (IllegalArgumentException e) {
+        }
+        props.setProperty(StaticVariables.VIS_OUTPUT_MODE, "MOVIE");
+        for (String invalid : new String[]{"1", "257", "many"}) {
+            props.setProperty(StaticVariables.GREY_LEVELS, invalid);
+            try {
+                new HeadlessRunner().readOptions(props);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    /**
+     * Test of getOutputMode method, of class HeadlessRunner.
+     */
+    @Test
+    public void testGetOutputMode() {
+        System.out.println("getOutputMode");
+        assertEquals(VisualisationOutputMode.SPARSE_TABLE, HeadlessRunner.getOutputMode("Sparse"));
+        assertEquals(VisualisationOutputMode.IMAGE_SERIES, HeadlessRunner.getOutputMode("images"));
+    }
+}
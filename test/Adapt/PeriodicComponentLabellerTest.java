@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.process.ByteProcessor;
+import java.awt.Rectangle;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PeriodicComponentLabellerTest {
+
+    public PeriodicComponentLabellerTest() {
+    }
+
+    /**
+     * Test of getComponentBounds method, of class PeriodicComponentLabeller.
+     */
+    @Test
+    public void testGetComponentBounds() {
+        System.out.println("getComponentBounds");
+        ByteProcessor map = new ByteProcessor(10, 20);
+        fill(map, 2, 5, 3, 4);
+        fill(map, 6, 16, 2, 4);
+        fill(map, 7, 0, 2, 3);
+        map.set(4, 10, 255);
+        map.set(5, 11, 255);
+        Rectangle[] result = PeriodicComponentLabeller.getComponentBounds(map, 255);
+        assertEquals(3, result.length);
+        assertEquals(new Rectangle(6, 16, 3, 7), result[0]);
+        assertEquals(new Rectangle(2, 5, 3, 4), result[1]);
+        assertEquals(new Rectangle(4, 10, 2, 2), result[2]);
+    }
+
+    /**
+     * Test of getComponentBounds method, of class PeriodicComponentLabeller,
+     * for a component occupying every row.
+     */
+    @Test
+    public void testGetComponentBoundsFullHeight() {
+        System.out.println("getComponentBoundsFullHeight");
+        ByteProcessor map = new ByteProcessor(5, 8);
+        fill(map, 1, 0, 1, 8);
+        Rectangle[] result = PeriodicComponentLabeller.getComponentBounds(map, 255);
+        assertEquals(1, result.length);
+        assertEquals(new Rectangle(1, 0, 1, 8), result[0]);
+    }
+
+    /**
+     * Test of getWrappedSpan method, of class PeriodicComponentLabeller.
+     */
+    @Test
+    public void testGetWrappedSpan() {
+        System.out.println("getWrappedSpan");
+        boolean[] rows = new boolean[10];
+        rows[0] = rows[1] = rows[4] = rows[9] = true;
+        assertArrayEquals(new int[]{9, 6}, PeriodicComponentLabeller.getWrappedSpan(rows));
+    }
+
+    private void fill(ByteProcessor map, int x, int y, int width, int height) {
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                map.set(i, j, 255);
+            }
+        }
+    }
+}
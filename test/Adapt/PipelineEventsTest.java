@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class PipelineEventsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public PipelineEventsTest() {
+    }
+
+    /**
+     * Test of begin method, of class PipelineEvents, when no recording is in
+     * progress.
+     */
+    @Test
+    public void testBeginNotRecording() {
+        System.out.println("beginNotRecording");
+        PipelineEvents.Span span = PipelineEvents.begin(PipelineEvents.Kind.CELL_OUTPUT);
+        assertSame(PipelineEvents.NO_OP, span);
+        assertFalse(span.isEnabled());
+        span.setCellIndex(1).setPixelCount(10).commit();
+    }
+
+    /**
+     * Test of begin method, of class PipelineEvents, during a recording.
+     */
+    @Test
+    public void testBeginRecording() throws IOException {
+        System.out.println("beginRecording");
+        File file = new File(folder.getRoot(), "test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("adapt.BlebSignal");
+            recording.start();
+            PipelineEvents.Span span = PipelineEvents.begin(PipelineEvents.Kind.BLEB_SIGNAL);
+            assertTrue(span.isEnabled());
+            span.setBlebIndex(3).setFrame(7).setFrameCount(5).setPixelCount(120).setExtent(9).commit();
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+        RecordedEvent event = null;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("adapt.BlebSignal")) {
+                event = e;
+            }
+        }
+        assertNotNull(event);
+        assertEquals(-1, event.getInt("cellIndex"));
+        assertEquals(3, event.getInt("blebIndex"));
+        assertEquals(7, event.getInt("frame"));
+        assertEquals(0, event.getInt("regionCount"));
+        assertEquals(5, event.getInt("frameCount"));
+        assertEquals(120, event.getLong("pixelCount"));
+        assertEquals(0, event.getLong("boundaryLength"));
+        assertEquals(9, event.getInt("extent"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PreviewFrameCacheTest {
+
+    public PreviewFrameCacheTest() {
+    }
+
+    /**
+     * Test of getBlurred method, of class PreviewFrameCache.
+     */
+    @Test
+    public void testGetBlurred() {
+        System.out.println("getBlurred");
+        PreviewFrameCache instance = new PreviewFrameCache(new ImageStack[]{makeStack(3), null});
+        ImageProcessor first = instance.getBlurred(2, 2.0);
+        first.set(10, 10, 0);
+        ImageProcessor second = instance.getBlurred(2, 2.0);
+        assertNotSame(first, second);
+        assertTrue(second.get(10, 10) > 0);
+        assertEquals(1, instance.size());
+        ImageProcessor other = instance.getBlurred(2, 4.0);
+        assertEquals(2, instance.size());
+        assertNotEquals(second.get(16, 16), other.get(16, 16));
+    }
+
+    /**
+     * Test of getRGB method, of class PreviewFrameCache, with a capacity
+     * smaller than the number of slices requested.
+     */
+    @Test
+    public void testGetRGBEviction() {
+        System.out.println("getRGBEviction");
+        ImageStack stack = makeStack(6);
+        PreviewFrameCache instance = new PreviewFrameCache(new ImageStack[]{stack, null}, 0);
+        for (int s = 1; s <= 6; s++) {
+            ImageProcessor rgb = instance.getRGB(0, s);
+            assertEquals(stack.getProcessor(s).get(16, 16), rgb.get(16, 16) & 0xff);
+        }
+        assertEquals(4, instance.size());
+    }
+
+    private ImageStack makeStack(int size) {
+        ImageStack stack = new ImageStack(32, 32);
+        for (int s = 1; s <= size; s++) {
+            ByteProcessor bp = new ByteProcessor(32, 32);
+            bp.setValue(20 * s);
+            bp.setRoi(12, 12, 8, 8);
+            bp.fill();
+            bp.resetRoi();
+            stack.addSlice(bp);
+        }
+        return stack;
+    }
+}
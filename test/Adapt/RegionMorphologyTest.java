@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.ImagePlus;
+import ij.Prefs;
+import ij.measure.Measurements;
+import ij.measure.ResultsTable;
+import ij.plugin.filter.Analyzer;
+import ij.plugin.filter.ParticleAnalyzer;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RegionMorphologyTest {
+
+    public RegionMorphologyTest() {
+    }
+
+    /**
+     * Test of measure method, of class RegionMorphology, for a square.
+     */
+    @Test
+    public void testMeasureSquare() {
+        System.out.println("measureSquare");
+        ByteProcessor mask = new ByteProcessor(30, 30);
+        mask.setColor(255);
+        mask.fill();
+        mask.setColor(0);
+        mask.fill(new ij.gui.Roi(5, 8, 10, 10));
+        RegionMorphology instance = new RegionMorphology(Measurements.AREA + Measurements.PERIMETER
+                + Measurements.RECT + Measurements.CENTROID, false);
+        assertArrayEquals(new String[]{"Area", "X", "Y", "Perim.", "BX", "BY", "Width", "Height"},
+                instance.getHeadings());
+        double[] result = instance.measure(mask, new Rectangle(30, 30), 0, null);
+        assertArrayEquals(new double[]{100.0, 10.0, 13.0, 40.0 - 4.0 * (2.0 - Math.sqrt(2.0)), 5.0, 8.0, 10.0, 10.0},
+                result, 1.0e-9);
+    }
+
+    /**
+     * Test of measure method, of class RegionMorphology, against ImageJ's
+     * particle analyser, for 8-bit and 32-bit intensity images. Every numeric
+     * column the particle analyser produces must be measured and agree.
+     */
+    @Test
+    public void testMeasureMatchesParticleAnalyzer() {
+        System.out.println("measureMatchesParticleAnalyzer");
+        ByteProcessor mask = new ByteProcessor(60, 50);
+        mask.setColor(255);
+        mask.fill();
+        mask.setColor(0);
+        mask.fillOval(10, 8, 33, 21);
+        mask.fillPolygon(new Polygon(new int[]{30, 55, 40}, new int[]{20, 25, 45}, 3));
+        ByteProcessor byteImage = new ByteProcessor(60, 50);
+        FloatProcessor floatImage = new FloatProcessor(60, 50);
+        for (int i = 0; i < byteImage.getPixelCount(); i++) {
+            byteImage.set(i, i % 11 == 0 ? 0 : (i * 37) % 251);
+            floatImage.setf(i, i % 11 == 0 ? 0.0f : ((i * 37) % 251) / 7.0f);
+        }
+        RegionMorphology instance = new RegionMorphology(Integer.MAX_VALUE, true);
+        List<String> headings = Arrays.asList(instance.getHeadings());
+        for (ImageProcessor image : new ImageProcessor[]{byteImage, floatImage}) {
+            ResultsTable rt = new ResultsTable();
+            Prefs.blackBackground = false;
+            Analyzer.setRedirectImage(new ImagePlus("", image));
+            ParticleAnalyzer analyzer = new ParticleAnalyzer(ParticleAnalyzer.SHOW_NONE,
+                    Integer.MAX_VALUE & ~Measurements.LIMIT, rt, 0.0, Double.POSITIVE_INFINITY);
+            mask.setThreshold(0, 0, ImageProcessor.NO_LUT_UPDATE);
+            analyzer.analyze(new ImagePlus("", mask), mask);
+            Analyzer.setRedirectImage(null);
+            mask.resetThreshold();
+            double[] result = instance.measure(mask, new Rectangle(0, 0, 60, 50), 0, image);
+            assertEquals(1, rt.size());
+            for (int c = 0; c <= rt.getLastColumn(); c++) {
+                if (rt.columnExists(c)) {
+                    assertTrue(rt.getColumnHeading(c), headings.contains(rt.getColumnHeading(c)));
+                }
+            }
+            for (int h = 0; h < headings.size(); h++) {
+                assertEquals(headings.get(h), rt.getValue(headings.get(h), 0), result[h], 1.0e-6);
+            }
+        }
+    }
+
+    /**
+     * Test of measure method, of class RegionMorphology, for a single pixel.
+     */
+    @Test
+    public void testMeasureSinglePixel() {
+        System.out.println("measureSinglePixel");
+        ByteProcessor mask = new ByteProcessor(5, 5);
+        mask.set(2, 3, 255);
+        RegionMorphology instance = new RegionMorphology(Measurements.AREA + Measurements.PERIMETER
+                + Measurements.FERET, false);
+        double[] result = instance.measure(mask, new Rectangle(5, 5), 255, null);
+        assertEquals(1.0, result[instance.indexOf("Area", -1)], 0.0);
+        assertEquals(2.0 * Math.sqrt(2.0), result[instance.indexOf("Perim.", -1)], 1.0e-9);
+        assertEquals(Math.sqrt(2.0), result[instance.indexOf("Feret", -1)], 1.0e-9);
+        assertEquals(1.0, result[instance.indexOf("MinFeret", -1)], 1.0e-9);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.awt.Rectangle;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RegionSpatialIndexTest {
+
+    public RegionSpatialIndexTest() {
+    }
+
+    /**
+     * Test of query method, of class RegionSpatialIndex, against a search of
+     * every region.
+     */
+    @Test
+    public void testQuery() {
+        System.out.println("query");
+        Random rand = new Random(7);
+        Rectangle[] regions = new Rectangle[200];
+        RegionSpatialIndex instance = new RegionSpatialIndex(500, 400, 20);
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = new Rectangle(rand.nextInt(500), rand.nextInt(400), 1 + rand.nextInt(40), 1 + rand.nextInt(40));
+            instance.update(i, regions[i]);
+        }
+        for (int i = 0; i < regions.length; i += 3) {
+            regions[i].translate(rand.nextInt(21) - 10, rand.nextInt(21) - 10);
+            instance.update(i, regions[i]);
+        }
+        instance.remove(5);
+        regions[5] = null;
+        assertEquals(199, instance.size());
+        assertFalse(instance.contains(5));
+        assertNull(instance.getBounds(5));
+        for (int q = 0; q < 50; q++) {
+            Rectangle r = new Rectangle(rand.nextInt(500) - 20, rand.nextInt(400) - 20, rand.nextInt(80), rand.nextInt(80));
+            int n = 0;
+            for (Rectangle region : regions) {
+                if (region != null && region.intersects(r)) {
+                    n++;
+                }
+            }
+            int[] result = instance.query(r);
+            assertEquals(n, result.length);
+            for (int k = 0; k < result.length; k++) {
+                assertTrue(regions[result[k]].intersects(r));
+                assertTrue(k == 0 || result[k] > result[k - 1]);
+            }
+        }
+    }
+}
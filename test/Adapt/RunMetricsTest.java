@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class RunMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public RunMetricsTest() {
+    }
+
+    /**
+     * Test of record method, of class RunMetrics, from several threads.
+     */
+    @Test
+    public void testRecord() throws InterruptedException {
+        System.out.println("record");
+        RunMetrics instance = new RunMetrics();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    instance.record(RunMetrics.Stage.SMOOTHING, System.nanoTime() - 1000);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(400, instance.getStageCalls(RunMetrics.Stage.SMOOTHING));
+        assertTrue(instance.getStageNanos(RunMetrics.Stage.SMOOTHING) >= 400000);
+        assertEquals(0, instance.getStageCalls(RunMetrics.Stage.IO));
+    }
+
+    /**
+     * Test of save method, of class RunMetrics.
+     */
+    @Test
+    public void testSave() throws IOException {
+        System.out.println("save");
+        File dir = folder.newFolder();
+        Files.write(new File(dir, "data.csv").toPath(), new byte[100]);
+        File sub = new File(dir, "sub");
+        sub.mkdir();
+        Files.write(new File(sub, "data.csv").toPath(), new byte[50]);
+        RunMetrics instance = new RunMetrics();
+        instance.start();
+        instance.addFrames(10);
+        instance.addCells(2);
+        instance.record(RunMetrics.Stage.REGION_GROWING, System.nanoTime());
+        instance.save(dir);
+        String json = new String(Files.readAllBytes(new File(dir, RunMetrics.REPORT_FILE_NAME).toPath()), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{"));
+        assertTrue(json.trim().endsWith("}"));
+        assertTrue(json.contains("\"frames\": 10,"));
+        assertTrue(json.contains("\"cells\": 2,"));
+        assertTrue(json.contains("\"bytesWritten\": 150,"));
+        assertTrue(json.contains("\"regionGrowing\": {\"seconds\": "));
+        assertTrue(json.contains("\"calls\": 1}"));
+        assertTrue(instance.getPeakHeapBytes() > 0);
+        assertFalse(json.contains("NaN"));
+    }
+
+    /**
+     * Test of formatNumber method, of class RunMetrics.
+     */
+    @Test
+    public void testFormatNumber() {
+        System.out.println("formatNumber");
+        assertEquals("null", RunMetrics.formatNumber(Double.NaN));
+        assertEquals("null", RunMetrics.formatNumber(Double.POSITIVE_INFINITY));
+        assertEquals(0.25, Double.parseDouble(RunMetrics.formatNumber(0.25)), 0.0);
+    }
+}
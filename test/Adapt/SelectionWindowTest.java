@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import IAClasses.Region;
+import ij.plugin.filter.GaussianBlur;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import java.awt.Rectangle;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SelectionWindowTest {
+
+    public SelectionWindowTest() {
+    }
+
+    /**
+     * Test of getNeighbourhood method, of class SelectionWindow.
+     */
+    @Test
+    public void testGetNeighbourhood() {
+        System.out.println("getNeighbourhood");
+        Rectangle result = SelectionWindow.getNeighbourhood(new Rectangle(20, 30, 10, 6), 2);
+        assertEquals(new Rectangle(13, 23, 24, 20), result);
+    }
+
+    /**
+     * Test of add method, of class SelectionWindow.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        SelectionWindow instance = new SelectionWindow(40, 30);
+        assertTrue(instance.isEmpty());
+        instance.add(new Rectangle(2, 3, 4, 2), 0);
+        instance.add(new Rectangle(30, 20, 6, 6), 0);
+        instance.add(new Rectangle(15, 10, 2, 2), 3);
+        assertEquals(3, instance.getAreas().size());
+        assertEquals(new Rectangle(0, 1, 8, 6), instance.getAreas().get(0));
+        assertEquals(new Rectangle(27, 17, 12, 12), instance.getAreas().get(1));
+        assertEquals(new Rectangle(11, 6, 10, 10), instance.getAreas().get(2));
+    }
+
+    /**
+     * Test of maskOutside method, of class SelectionWindow, for two cells far
+     * apart.
+     */
+    @Test
+    public void testMaskOutside() {
+        System.out.println("maskOutside");
+        ByteProcessor allMasks = new ByteProcessor(40, 30);
+        allMasks.setColor(Region.MASK_FOREGROUND);
+        allMasks.fill();
+        SelectionWindow instance = new SelectionWindow(40, 30);
+        instance.add(new Rectangle(4, 4, 4, 2), 0);
+        instance.add(new Rectangle(30, 20, 6, 6), 0);
+        instance.maskOutside(allMasks);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                boolean inside = instance.getAreas().get(0).contains(x, y) || instance.getAreas().get(1).contains(x, y);
+                int expResult = inside ? Region.MASK_FOREGROUND : Region.MASK_BACKGROUND;
+                assertEquals(expResult, allMasks.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * Test of blur method, of class SelectionWindow, against a blur of the
+     * whole image, with everything outside the window set to the minimum.
+     */
+    @Test
+    public void testBlur() {
+        System.out.println("blur");
+        Random rand = new Random(3);
+        FloatProcessor source = new FloatProcessor(80, 60);
+        for (int i = 0; i < 80 * 60; i++) {
+            source.setf(i, rand.nextFloat() * 100.0f);
+        }
+        source.setf(3, 1, -5.0f);
+        FloatProcessor expResult = (FloatProcessor) source.duplicate();
+        new GaussianBlur().blurGaussian(expResult, 2.0, 2.0, 0.01);
+        SelectionWindow instance = new SelectionWindow(80, 60);
+        instance.add(new Rectangle(10, 10, 12, 8), 0);
+        instance.add(new Rectangle(18, 14, 10, 10), 0);
+        instance.add(new Rectangle(70, 50, 8, 8), 0);
+        FloatProcessor result = (FloatProcessor) source.duplicate();
+        instance.blur(source, result, 2.0, 0.01);
+        for (int y = 0; y < 60; y++) {
+            for (int x = 0; x < 80; x++) {
+                boolean inside = false;
+                for (Rectangle r : instance.getAreas()) {
+                    inside |= r.contains(x, y);
+                }
+                float expected = inside ? expResult.getf(x, y) : -5.0f;
+                assertEquals(expected, result.getf(x, y), 0.01);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ShortProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SignalPlaneCacheTest {
+
+    public SignalPlaneCacheTest() {
+    }
+
+    /**
+     * Test of getPlane method, of class SignalPlaneCache.
+     */
+    @Test
+    public void testGetPlane() {
+        System.out.println("getPlane");
+        ImageStack stack = new ImageStack(4, 4);
+        for (int s = 0; s < 3; s++) {
+            ShortProcessor ip = new ShortProcessor(4, 4);
+            ip.set(0, 0, 1000 * (s + 1));
+            ip.set(1, 0, 1000);
+            stack.addSlice(ip);
+        }
+        SignalPlaneCache instance = new SignalPlaneCache(stack, 32);
+        assertArrayEquals(new double[]{0.0, 3000.0}, instance.getRange(), 0.0);
+        ByteProcessor first = instance.getPlane(1);
+        assertSame(first, instance.getPlane(1));
+        assertEquals(255, instance.getPlane(3).get(0, 0));
+        assertEquals(instance.getPlane(3).get(1, 0), instance.getPlane(1).get(1, 0));
+        instance.getPlane(2);
+        instance.getPlane(3);
+        assertNotSame(first, instance.getPlane(1));
+    }
+
+    /**
+     * Test of getRange method, of class SignalPlaneCache, for an 8-bit stack.
+     */
+    @Test
+    public void testGetRange8Bit() {
+        System.out.println("getRange8Bit");
+        ImageStack stack = new ImageStack(2, 1);
+        stack.addSlice(new ByteProcessor(2, 1, new byte[]{10, 20}));
+        assertArrayEquals(new double[]{0.0, 255.0}, new SignalPlaneCache(stack).getRange(), 0.0);
+    }
+
+    /**
+     * Test of getPlane method, of class SignalPlaneCache, for a stack with
+     * values between 0 and 1.
+     */
+    @Test
+    public void testGetPlaneFloat() {
+        System.out.println("getPlaneFloat");
+        ImageStack stack = new ImageStack(3, 1);
+        stack.addSlice(new FloatProcessor(3, 1, new float[]{0.0f, 0.5f, 1.0f}));
+        SignalPlaneCache instance = new SignalPlaneCache(stack);
+        ByteProcessor result = instance.getPlane(1);
+        assertEquals(0, result.get(0, 0));
+        assertEquals(128, result.get(1, 0));
+        assertEquals(255, result.get(2, 0));
+    }
+}
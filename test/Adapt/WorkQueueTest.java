@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Adapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class WorkQueueTest {
+
+    private File dir;
+
+    public WorkQueueTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("queue").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Test of claim method, of class WorkQueue.
+     */
+    @Test
+    public void testClaim() throws IOException {
+        System.out.println("claim");
+        WorkQueue a = new WorkQueue(dir, "a", 60000L);
+        WorkQueue b = new WorkQueue(dir, "b", 60000L);
+        WorkQueue.Lease lease = a.claim("movie1.tif");
+        assertNotNull(lease);
+        assertNull(b.claim("movie1.tif"));
+        lease.release();
+        WorkQueue.Lease leaseB = b.claim("movie1.tif");
+        assertNotNull(leaseB);
+        leaseB.complete();
+        assertTrue(a.isDone("movie1.tif"));
+        assertNull(a.claim("movie1.tif"));
+        assertFalse(new File(dir, "movie1.tif" + WorkQueue.LOCK_SUFFIX).exists());
+        a.shutdown();
+        b.shutdown();
+    }
+
+    /**
+     * Test of claim method, of class WorkQueue, for a lock abandoned by a dead
+     * worker.
+     */
+    @Test
+    public void testClaimStale() throws IOException {
+        System.out.println("claimStale");
+        WorkQueue dead = new WorkQueue(dir, "dead", 60000L);
+        WorkQueue live = new WorkQueue(dir, "live", 60000L);
+        WorkQueue.Lease abandoned = dead.claim("movie2.tif");
+        dead.shutdown();
+        assertNull(live.claim("movie2.tif"));
+        File lock = new File(dir, "movie2.tif" + WorkQueue.LOCK_SUFFIX);
+        Files.setLastModifiedTime(lock.toPath(), FileTime.fromMillis(System.currentTimeMillis() - 120000L));
+        WorkQueue.Lease lease = live.claim("movie2.tif");
+        assertNotNull(lease);
+        abandoned.renew();
+        assertTrue(abandoned.isLost());
+        abandoned.release();
+        assertTrue(lock.exists());
+        lease.complete();
+        assertTrue(live.isDone("movie2.tif"));
+        live.shutdown();
+    }
+
+    /**
+     * Test of claim method, of class WorkQueue, when a reclaiming worker died
+     * and left its guard behind.
+     */
+    @Test
+    public void testClaimAbandonedGuard() throws IOException {
+        System.out.println("claimAbandonedGuard");
+        WorkQueue dead = new WorkQueue(dir, "dead", 60000L);
+        WorkQueue live = new WorkQueue(dir, "live", 60000L);
+        dead.claim("movie3.tif");
+        dead.shutdown();
+        long old = System.currentTimeMillis() - 120000L;
+        File lock = new File(dir, "movie3.tif" + WorkQueue.LOCK_SUFFIX);
+        Files.setLastModifiedTime(lock.toPath(), FileTime.fromMillis(old));
+        File guard = new File(dir, "movie3.tif" + WorkQueue.RECLAIM_SUFFIX);
+        Files.write(guard.toPath(), "other".getBytes(StandardCharsets.UTF_8));
+        assertNull(live.claim("movie3.tif"));
+        assertTrue(guard.exists());
+        Files.setLastModifiedTime(guard.toPath(), FileTime.fromMillis(old));
+        assertNull(live.claim("movie3.tif"));
+        assertFalse(guard.exists());
+        WorkQueue.Lease lease = live.claim("movie3.tif");
+        assertNotNull(lease);
+        assertFalse(guard.exists());
+        lease.complete();
+        live.shutdown();
+    }
+
+    /**
+     * Test of process method, of class WorkQueue, with several workers
+     * competing for the same items.
+     */
+    @Test
+    public void testProcess() throws Exception {
+        System.out.println("process");
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            keys.add(String.format("movie%02d.tif", i));
+        }
+        ConcurrentMap<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            WorkQueue queue = new WorkQueue(dir, "worker" + w, 200L);
+            results.add(exec.submit(() -> queue.process(keys, key -> {
+                counts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                return !key.equals("movie07.tif") || counts.get(key).get() > 1;
+            })));
+        }
+        int failures = 0;
+        for (Future<Boolean> result : results) {
+            failures += result.get() ? 0 : 1;
+        }
+        exec.shutdown();
+        assertEquals(1, failures);
+        assertEquals(new ArrayList<>(keys), new ArrayList<>(new TreeSet<>(counts.keySet())));
+        for (String key : keys) {
+            assertEquals(key, key.equals("movie07.tif") ? 2 : 1, counts.get(key).get());
+            assertTrue(new File(dir, key + WorkQueue.DONE_SUFFIX).exists());
+        }
+        assertEquals(Arrays.asList(), Arrays.asList(dir.list((d, name) -> name.endsWith(WorkQueue.LOCK_SUFFIX))));
+    }
+
+    /**
+     * Test of getKeys method, of class WorkQueue.
+     */
+    @Test
+    public void testGetKeys() {
+        System.out.println("getKeys");
+        List<File> files = Arrays.asList(new File("a", "movie1.tif"), new File("b", "movie2.tif"));
+        assertEquals(Arrays.asList("movie1.tif", "movie2.tif"), new ArrayList<>(WorkQueue.getKeys(files).keySet()));
+        assertEquals(Integer.valueOf(1), WorkQueue.getKeys(files).get("movie2.tif"));
+        try {
+            WorkQueue.getKeys(Arrays.asList(new File("a", "movie1.tif"), new File("b", "movie1.tif")));
+            fail("Duplicate name accepted");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
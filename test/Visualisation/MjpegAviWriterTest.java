@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class MjpegAviWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public MjpegAviWriterTest() {
+    }
+
+    /**
+     * Test of writeFrame method, of class MjpegAviWriter, with frames written
+     * out of order.
+     */
+    @Test
+    public void testWriteFrame() throws IOException {
+        System.out.println("writeFrame");
+        File file = new File(folder.getRoot(), "test.avi");
+        Color[] colors = {Color.red, Color.green, Color.blue};
+        try (MjpegAviWriter writer = new MjpegAviWriter(file, 32, 24)) {
+            writer.writeFrame(2, makeFrame(colors[2]));
+            writer.writeFrame(0, makeFrame(colors[0]));
+            assertEquals(1, writer.getFrameCount());
+            writer.writeFrame(1, makeFrame(colors[1]));
+            assertEquals(3, writer.getFrameCount());
+        }
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("RIFF", fourCC(b, 0));
+        assertEquals(b.capacity() - 8, b.getInt(4));
+        assertEquals("AVI ", fourCC(b, 8));
+        assertEquals(3, b.getInt(48));
+        assertEquals(32, b.getInt(64));
+        assertEquals(24, b.getInt(68));
+        int moviStart = 220;
+        assertEquals("movi", fourCC(b, moviStart));
+        int idx1 = moviStart + b.getInt(moviStart - 4);
+        assertEquals("idx1", fourCC(b, idx1));
+        assertEquals(48, b.getInt(idx1 + 4));
+        for (int i = 0; i < 3; i++) {
+            int entry = idx1 + 8 + 16 * i;
+            int offset = moviStart + b.getInt(entry + 8);
+            int size = b.getInt(entry + 12);
+            assertEquals("00dc", fourCC(b, offset));
+            assertEquals(size, b.getInt(offset + 4));
+            BufferedImage frame = ImageIO.read(new ByteArrayInputStream(b.array(), offset + 8, size));
+            Color c = new Color(frame.getRGB(16, 12));
+            assertEquals(colors[i].getRed(), c.getRed(), 8);
+            assertEquals(colors[i].getGreen(), c.getGreen(), 8);
+            assertEquals(colors[i].getBlue(), c.getBlue(), 8);
+        }
+    }
+
+    /**
+     * Test of writeFrame method, of class MjpegAviWriter, with a repeated
+     * frame index.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteFrameTwice() throws IOException {
+        System.out.println("writeFrameTwice");
+        try (MjpegAviWriter writer = new MjpegAviWriter(new File(folder.getRoot(), "test.avi"), 32, 24)) {
+            writer.writeFrame(0, makeFrame(Color.red));
+            writer.writeFrame(0, makeFrame(Color.red));
+        }
+    }
+
+    private BufferedImage makeFrame(Color color) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 32, 24);
+        g.dispose();
+        return image;
+    }
+
+    private String fourCC(ByteBuffer b, int pos) {
+        return new String(b.array(), pos, 4, StandardCharsets.US_ASCII);
+    }
+}
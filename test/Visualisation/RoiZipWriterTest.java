@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import ij.gui.Roi;
+import ij.gui.TextRoi;
+import ij.io.RoiDecoder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RoiZipWriterTest {
+
+    public RoiZipWriterTest() {
+    }
+
+    /**
+     * Test of add method, of class RoiZipWriter.
+     */
+    @Test
+    public void testAdd() throws IOException {
+        System.out.println("add");
+        File file = File.createTempFile("labels", ".zip");
+        file.deleteOnExit();
+        try (RoiZipWriter instance = new RoiZipWriter(file)) {
+            for (int i = 0; i < 2; i++) {
+                TextRoi label = new TextRoi(10, 20, "1");
+                label.setPosition(3);
+                instance.add(label);
+                assertNull(label.getName());
+            }
+        }
+        ArrayList<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, n);
+                }
+                Roi roi = RoiDecoder.openFromByteArray(bytes.toByteArray());
+                assertEquals(3, roi.getPosition());
+                assertTrue(roi instanceof TextRoi);
+            }
+        }
+        assertEquals(2, names.size());
+        assertNotEquals(names.get(0), names.get(1));
+        assertTrue(names.get(0).startsWith("0003-"));
+    }
+}
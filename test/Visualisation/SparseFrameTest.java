@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 David Barry <david.barry at crick dot ac dot uk>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Visualisation;
+
+import ij.process.FloatProcessor;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SparseFrameTest {
+
+    public SparseFrameTest() {
+    }
+
+    /**
+     * Test of render and clear methods, of class SparseFrame.
+     */
+    @Test
+    public void testRenderAndClear() {
+        System.out.println("render");
+        SparseFrame instance = new SparseFrame(10, 8);
+        instance.add(2, 3, 1.5);
+        instance.add(2, 3, -2.0);
+        instance.add(9, 7, 4.0);
+        instance.add(10, 0, 5.0);
+        assertEquals(3, instance.size());
+        FloatProcessor output = new FloatProcessor(10, 8);
+        instance.render(output);
+        assertEquals(-2.0f, output.getf(2, 3), 0.0f);
+        assertEquals(4.0f, output.getf(9, 7), 0.0f);
+        instance.clear(output);
+        for (float v : (float[]) output.getPixels()) {
+            assertEquals(0.0f, v, 0.0f);
+        }
+    }
+
+    /**
+     * Test of save and load methods, of class SparseFrame.
+     */
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        System.out.println("save");
+        SparseFrame instance = new SparseFrame(6, 5);
+        instance.add(1, 1, 0.25);
+        instance.add(5, 4, -3.0);
+        File file = File.createTempFile("sparse", ".csv");
+        file.deleteOnExit();
+        instance.save(file);
+        SparseFrame result = SparseFrame.load(file);
+        assertEquals(6, result.getWidth());
+        assertEquals(5, result.getHeight());
+        assertArrayEquals((float[]) instance.toDense().getPixels(), (float[]) result.toDense().getPixels(), 0.0f);
+    }
+}